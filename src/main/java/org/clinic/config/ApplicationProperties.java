@@ -2,6 +2,10 @@ package org.clinic.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Properties specific to Clinic.
  * <p>
@@ -10,4 +14,692 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Clinic clinic = new Clinic();
+
+    private final User user = new User();
+
+    private final Cache cache = new Cache();
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final Security security = new Security();
+
+    private final Audit audit = new Audit();
+
+    public Clinic getClinic() {
+        return clinic;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public Security getSecurity() {
+        return security;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public static class Clinic {
+
+        private final Pagination pagination = new Pagination();
+
+        private final MultiGet multiGet = new MultiGet();
+
+        private final Bulk bulk = new Bulk();
+
+        private final Search search = new Search();
+
+        public Pagination getPagination() {
+            return pagination;
+        }
+
+        public MultiGet getMultiGet() {
+            return multiGet;
+        }
+
+        public Bulk getBulk() {
+            return bulk;
+        }
+
+        public Search getSearch() {
+            return search;
+        }
+
+        public static class MultiGet {
+
+            private int maxIds = 1000;
+
+            private int chunkSize = 256;
+
+            public int getMaxIds() {
+                return maxIds;
+            }
+
+            public void setMaxIds(int maxIds) {
+                this.maxIds = maxIds;
+            }
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+        }
+
+        public static class Bulk {
+
+            private int chunkSize = 500;
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+        }
+
+        public static class Search {
+
+            private int defaultLimit = 10;
+
+            private int maxLimit = 100;
+
+            public int getDefaultLimit() {
+                return defaultLimit;
+            }
+
+            public void setDefaultLimit(int defaultLimit) {
+                this.defaultLimit = defaultLimit;
+            }
+
+            public int getMaxLimit() {
+                return maxLimit;
+            }
+
+            public void setMaxLimit(int maxLimit) {
+                this.maxLimit = maxLimit;
+            }
+        }
+    }
+
+    public static class User {
+
+        private final Pagination pagination = new Pagination();
+
+        private final BulkImport bulkImport = new BulkImport();
+
+        public Pagination getPagination() {
+            return pagination;
+        }
+
+        public BulkImport getBulkImport() {
+            return bulkImport;
+        }
+
+        public static class BulkImport {
+
+            private int chunkSize = 500;
+
+            private int parallelism = Runtime.getRuntime().availableProcessors();
+
+            private int maxReportedErrors = 1000;
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+
+            public int getParallelism() {
+                return parallelism;
+            }
+
+            public void setParallelism(int parallelism) {
+                this.parallelism = parallelism;
+            }
+
+            public int getMaxReportedErrors() {
+                return maxReportedErrors;
+            }
+
+            public void setMaxReportedErrors(int maxReportedErrors) {
+                this.maxReportedErrors = maxReportedErrors;
+            }
+        }
+    }
+
+    public static class Cache {
+
+        private final Region clinicsById = new Region();
+
+        private final Hibernate hibernate = new Hibernate();
+
+        private final Region verifiedTokens = new Region();
+
+        private final Region userDetailsByUsername = new Region();
+
+        private final Region unknownUsernames = new Region();
+
+        public Region getClinicsById() {
+            return clinicsById;
+        }
+
+        public Region getVerifiedTokens() {
+            return verifiedTokens;
+        }
+
+        public Region getUserDetailsByUsername() {
+            return userDetailsByUsername;
+        }
+
+        public Region getUnknownUsernames() {
+            return unknownUsernames;
+        }
+
+        public Hibernate getHibernate() {
+            return hibernate;
+        }
+
+        /**
+         * Regions of the Hibernate second-level cache.
+         */
+        public static class Hibernate {
+
+            private final Region clinic = new Region();
+
+            private final Region user = new Region();
+
+            private final Region userNaturalId = new Region();
+
+            public Region getClinic() {
+                return clinic;
+            }
+
+            public Region getUser() {
+                return user;
+            }
+
+            public Region getUserNaturalId() {
+                return userNaturalId;
+            }
+        }
+
+        /**
+         * Settings of one in-process cache region.
+         */
+        public static class Region {
+
+            private boolean enabled = false;
+
+            private long maximumSize = 10_000;
+
+            private long timeToLiveSeconds = 3600;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(long maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+        }
+    }
+
+    public static class SingleFlight {
+
+        private long timeoutMillis = 5000;
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    public static class Security {
+
+        private final PasswordHashing passwordHashing = new PasswordHashing();
+
+        private final RateLimit rateLimit = new RateLimit();
+
+        private final RefreshToken refreshToken = new RefreshToken();
+
+        private final TokenRevocation tokenRevocation = new TokenRevocation();
+
+        private final ReferenceToken referenceToken = new ReferenceToken();
+
+        public PasswordHashing getPasswordHashing() {
+            return passwordHashing;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        public RefreshToken getRefreshToken() {
+            return refreshToken;
+        }
+
+        public TokenRevocation getTokenRevocation() {
+            return tokenRevocation;
+        }
+
+        public ReferenceToken getReferenceToken() {
+            return referenceToken;
+        }
+
+        public static class PasswordHashing {
+
+            private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+            private int queueCapacity = 100;
+
+            private long waitTimeoutMillis = 5000;
+
+            private long retryAfterSeconds = 1;
+
+            private long targetMillis = 250;
+
+            private int minCost = 10;
+
+            private int maxCost = 14;
+
+            public int getThreads() {
+                return threads;
+            }
+
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public long getWaitTimeoutMillis() {
+                return waitTimeoutMillis;
+            }
+
+            public void setWaitTimeoutMillis(long waitTimeoutMillis) {
+                this.waitTimeoutMillis = waitTimeoutMillis;
+            }
+
+            public long getRetryAfterSeconds() {
+                return retryAfterSeconds;
+            }
+
+            public void setRetryAfterSeconds(long retryAfterSeconds) {
+                this.retryAfterSeconds = retryAfterSeconds;
+            }
+
+            public long getTargetMillis() {
+                return targetMillis;
+            }
+
+            public void setTargetMillis(long targetMillis) {
+                this.targetMillis = targetMillis;
+            }
+
+            public int getMinCost() {
+                return minCost;
+            }
+
+            public void setMinCost(int minCost) {
+                this.minCost = minCost;
+            }
+
+            public int getMaxCost() {
+                return maxCost;
+            }
+
+            public void setMaxCost(int maxCost) {
+                this.maxCost = maxCost;
+            }
+        }
+
+        public static class RateLimit {
+
+            private boolean enabled = false;
+
+            private long maximumClients = 100_000;
+
+            private long idleTimeoutSeconds = 600;
+
+            private List<Rule> rules = new ArrayList<>();
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaximumClients() {
+                return maximumClients;
+            }
+
+            public void setMaximumClients(long maximumClients) {
+                this.maximumClients = maximumClients;
+            }
+
+            public long getIdleTimeoutSeconds() {
+                return idleTimeoutSeconds;
+            }
+
+            public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+                this.idleTimeoutSeconds = idleTimeoutSeconds;
+            }
+
+            public List<Rule> getRules() {
+                return rules;
+            }
+
+            public void setRules(List<Rule> rules) {
+                this.rules = rules;
+            }
+
+            public static class Rule {
+
+                private String path;
+
+                private long capacity = 60;
+
+                private double refillPerSecond = 1;
+
+                public String getPath() {
+                    return path;
+                }
+
+                public void setPath(String path) {
+                    this.path = path;
+                }
+
+                public long getCapacity() {
+                    return capacity;
+                }
+
+                public void setCapacity(long capacity) {
+                    this.capacity = capacity;
+                }
+
+                public double getRefillPerSecond() {
+                    return refillPerSecond;
+                }
+
+                public void setRefillPerSecond(double refillPerSecond) {
+                    this.refillPerSecond = refillPerSecond;
+                }
+            }
+        }
+
+        public static class RefreshToken {
+
+            private long validitySeconds = 2_592_000;
+
+            private String purgeCron = "0 0 3 * * ?";
+
+            public long getValiditySeconds() {
+                return validitySeconds;
+            }
+
+            public void setValiditySeconds(long validitySeconds) {
+                this.validitySeconds = validitySeconds;
+            }
+
+            public String getPurgeCron() {
+                return purgeCron;
+            }
+
+            public void setPurgeCron(String purgeCron) {
+                this.purgeCron = purgeCron;
+            }
+        }
+
+        public static class TokenRevocation {
+
+            private double falsePositiveProbability = 0.01;
+
+            private long rebuildIntervalMillis = 60_000;
+
+            private int recentCapacity = 1000;
+
+            private String purgeCron = "0 30 3 * * ?";
+
+            public double getFalsePositiveProbability() {
+                return falsePositiveProbability;
+            }
+
+            public void setFalsePositiveProbability(double falsePositiveProbability) {
+                this.falsePositiveProbability = falsePositiveProbability;
+            }
+
+            public long getRebuildIntervalMillis() {
+                return rebuildIntervalMillis;
+            }
+
+            public void setRebuildIntervalMillis(long rebuildIntervalMillis) {
+                this.rebuildIntervalMillis = rebuildIntervalMillis;
+            }
+
+            public int getRecentCapacity() {
+                return recentCapacity;
+            }
+
+            public void setRecentCapacity(int recentCapacity) {
+                this.recentCapacity = recentCapacity;
+            }
+
+            public String getPurgeCron() {
+                return purgeCron;
+            }
+
+            public void setPurgeCron(String purgeCron) {
+                this.purgeCron = purgeCron;
+            }
+        }
+
+        public static class ReferenceToken {
+
+            private boolean enabled = false;
+
+            private long maximumSessions = 100_000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaximumSessions() {
+                return maximumSessions;
+            }
+
+            public void setMaximumSessions(long maximumSessions) {
+                this.maximumSessions = maximumSessions;
+            }
+        }
+    }
+
+    public static class Audit {
+
+        private boolean enabled = true;
+
+        private int bufferSize = 8192;
+
+        private int batchSize = 250;
+
+        private long flushIntervalMillis = 500;
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        private long blockTimeoutMillis = 100;
+
+        private String spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "clinic-audit").toString();
+
+        private long shutdownTimeoutMillis = 10_000;
+
+        private StorageLayout storageLayout = StorageLayout.JSON;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public long getBlockTimeoutMillis() {
+            return blockTimeoutMillis;
+        }
+
+        public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+        }
+
+        public String getSpillDirectory() {
+            return spillDirectory;
+        }
+
+        public void setSpillDirectory(String spillDirectory) {
+            this.spillDirectory = spillDirectory;
+        }
+
+        public long getShutdownTimeoutMillis() {
+            return shutdownTimeoutMillis;
+        }
+
+        public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+            this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        }
+
+        public StorageLayout getStorageLayout() {
+            return storageLayout;
+        }
+
+        public void setStorageLayout(StorageLayout storageLayout) {
+            this.storageLayout = storageLayout;
+        }
+
+        /**
+         * What an audit event does when the buffer is full.
+         */
+        public enum OverflowPolicy {
+            /** Wait for room, up to {@code block-timeout-millis}, then drop the event. */
+            BLOCK,
+            /** Drop the event. */
+            DROP,
+            /** Append the event to a file of {@code spill-directory}, written to the database once the buffer is idle. */
+            SPILL
+        }
+
+        /**
+         * How the data of new audit events is stored; events of both layouts are read.
+         */
+        public enum StorageLayout {
+            /** In one JSON column of the event. */
+            JSON,
+            /** In one row per entry of {@code jhi_persistent_audit_evt_data}. */
+            TABLE
+        }
+    }
+
+    /**
+     * The page sizes of a paginated listing.
+     */
+    public static class Pagination {
+
+        private int defaultSize = 20;
+
+        private int maxSize = 200;
+
+        public int getDefaultSize() {
+            return defaultSize;
+        }
+
+        public void setDefaultSize(int defaultSize) {
+            this.defaultSize = defaultSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package org.clinic.config;
+
+import org.clinic.repository.ClinicRepository;
+import org.clinic.repository.UserRepository;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process caches, backed by Caffeine.
+ * <p>
+ * Each cache region is configured in {@link ApplicationProperties.Cache}; a disabled region is replaced by a
+ * {@link NoOpCache} so that the cache annotations stay in place whatever the profile. Caches are transaction-aware:
+ * evictions are applied after the surrounding transaction commits, so a concurrent read cannot re-populate a value
+ * that is about to be rolled back or overwritten. The caching advice is ordered just outside the transaction advice,
+ * so a cache hit does not open a transaction. Hit, miss, eviction and load statistics are bound to Micrometer by
+ * Spring Boot's cache metrics auto-configuration.
+ * <p>
+ * The Hibernate second-level cache uses a separate JCache manager, also backed by Caffeine. It is switched on with
+ * the {@code hibernate.cache.use_second_level_cache} JPA property. The enabled regions record their own statistics,
+ * bound to Micrometer as the {@code cache.*} metrics of the {@code hibernate} cache manager, so they are exported
+ * without the cost of {@code hibernate.generate_statistics}.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfiguration {
+
+    public static final String USER_NATURAL_ID_REGION = org.clinic.domain.User.class.getName() + "##NaturalId";
+
+    private final Logger log = LoggerFactory.getLogger(CacheConfiguration.class);
+
+    private final ApplicationProperties applicationProperties;
+
+    public CacheConfiguration(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
+    @Bean
+    public CacheManager cacheManager() {
+        List<Cache> caches = new ArrayList<>();
+        caches.add(createCache(ClinicRepository.CLINICS_BY_ID_CACHE, applicationProperties.getCache().getClinicsById()));
+        caches.add(createCache(UserRepository.USER_DETAILS_BY_USERNAME_CACHE, applicationProperties.getCache().getUserDetailsByUsername()));
+        caches.add(createCache(UserRepository.UNKNOWN_USERNAMES_CACHE, applicationProperties.getCache().getUnknownUsernames()));
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
+    }
+
+    /**
+     * The second-level cache manager of this application context. The default manager of the caching provider is
+     * shared by the whole JVM, so another context, such as a test context with different properties, would replace
+     * the regions of this one; each context gets its own manager instead, closed with the context.
+     */
+    @Bean(destroyMethod = "close")
+    public javax.cache.CacheManager hibernateCacheManager(MeterRegistry meterRegistry) {
+        CachingProvider cachingProvider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        javax.cache.CacheManager cacheManager = cachingProvider.getCacheManager(
+            URI.create("hibernate-" + UUID.randomUUID()), cachingProvider.getDefaultClassLoader());
+        ApplicationProperties.Cache.Hibernate hibernate = applicationProperties.getCache().getHibernate();
+        createRegion(cacheManager, org.clinic.domain.Clinic.class.getName(), hibernate.getClinic(), meterRegistry);
+        createRegion(cacheManager, org.clinic.domain.User.class.getName(), hibernate.getUser(), meterRegistry);
+        createRegion(cacheManager, USER_NATURAL_ID_REGION, hibernate.getUserNaturalId(), meterRegistry);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager hibernateCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private Cache createCache(String name, ApplicationProperties.Cache.Region region) {
+        if (!region.isEnabled()) {
+            log.debug("Cache {} is disabled", name);
+            return new NoOpCache(name);
+        }
+        log.debug("Creating cache {} with maximum size {} and time to live {}s",
+            name, region.getMaximumSize(), region.getTimeToLiveSeconds());
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder()
+            .maximumSize(region.getMaximumSize())
+            .expireAfterWrite(Duration.ofSeconds(region.getTimeToLiveSeconds()))
+            .recordStats();
+        return new TransactionAwareCacheDecorator(new CaffeineCache(name, caffeine.build()));
+    }
+
+    /**
+     * Create a second-level cache region. Hibernate would create a missing region itself, unbounded, so a disabled
+     * region is still created, with a maximum size of zero, and without metrics.
+     */
+    private void createRegion(javax.cache.CacheManager cacheManager, String name, ApplicationProperties.Cache.Region region,
+                              MeterRegistry meterRegistry) {
+        long maximumSize = region.isEnabled() ? region.getMaximumSize() : 0;
+        log.debug("Creating second-level cache region {} with maximum size {} and time to live {}s",
+            name, maximumSize, region.getTimeToLiveSeconds());
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(region.getTimeToLiveSeconds())));
+        configuration.setStatisticsEnabled(true);
+        javax.cache.Cache<Object, Object> cache = cacheManager.createCache(name, configuration);
+        if (region.isEnabled()) {
+            JCacheMetrics.monitor(meterRegistry, cache, "cacheManager", "hibernate");
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.clinic.config;
 
 import org.clinic.security.*;
 import org.clinic.security.jwt.*;
+import org.clinic.security.ratelimit.RateLimitFilter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpMethod;
@@ -12,9 +15,9 @@ import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
 
 @EnableWebSecurity
@@ -24,10 +27,19 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final TokenProvider tokenProvider;
     private final SecurityProblemSupport problemSupport;
+    private final ApplicationProperties applicationProperties;
+    private final HandlerExceptionResolver exceptionResolver;
+    private final MeterRegistry meterRegistry;
 
-    public SecurityConfiguration(TokenProvider tokenProvider, SecurityProblemSupport problemSupport) {
+    public SecurityConfiguration(TokenProvider tokenProvider, SecurityProblemSupport problemSupport,
+                                 ApplicationProperties applicationProperties,
+                                 @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver,
+                                 MeterRegistry meterRegistry) {
         this.tokenProvider = tokenProvider;
         this.problemSupport = problemSupport;
+        this.applicationProperties = applicationProperties;
+        this.exceptionResolver = exceptionResolver;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -55,6 +67,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .and()
             .authorizeRequests()
             .antMatchers("/api/authenticate", "/api/users","/api/authenticate").permitAll()
+            .antMatchers("/api/authenticate/refresh").permitAll()
             .antMatchers("/api/**").authenticated()
             .antMatchers("/management/health").permitAll()
             .antMatchers("/management/info").permitAll()
@@ -66,11 +79,27 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.Security.PasswordHashing passwordHashing = applicationProperties.getSecurity().getPasswordHashing();
+        BCryptCalibration calibration = BCryptCalibration.calibrate(passwordHashing.getTargetMillis(),
+            passwordHashing.getMinCost(), passwordHashing.getMaxCost());
+        calibration.bindTo(meterRegistry);
+        return new BoundedPasswordEncoder(calibration.createPasswordEncoder(), passwordHashing, meterRegistry);
     }
 
     private JWTConfigurer securityConfigurerAdapter() {
-        return new JWTConfigurer(tokenProvider);
+        return new JWTConfigurer(tokenProvider, rateLimitFilter());
+    }
+
+    /**
+     * The rate limit filter is not a bean, as a servlet filter bean would also be registered with the servlet
+     * container, outside of the security filter chain.
+     */
+    private RateLimitFilter rateLimitFilter() {
+        ApplicationProperties.Security.RateLimit rateLimit = applicationProperties.getSecurity().getRateLimit();
+        if (!rateLimit.isEnabled()) {
+            return null;
+        }
+        return new RateLimitFilter(rateLimit, exceptionResolver, meterRegistry);
     }
 }
@@ -0,0 +1,438 @@
+package org.clinic.config.audit;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.config.ApplicationProperties.Audit.OverflowPolicy;
+import org.clinic.config.ApplicationProperties.Audit.StorageLayout;
+import org.clinic.domain.PersistentAuditEvent;
+import org.clinic.repository.PersistenceAuditEventRepository;
+import org.clinic.service.util.RingBuffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@link AuditEventRepository} of the actuator, writing {@link PersistentAuditEvent}s in the background.
+ * <p>
+ * Request threads only publish their events to a lock-free {@link RingBuffer} of {@code application.audit.buffer-size}
+ * events. A writer thread drains it in batches of {@code batch-size} events, each saved in one transaction, whose
+ * inserts Hibernate sends in JDBC batches; it wakes up when a batch is full, and at the latest every
+ * {@code flush-interval-millis}. When the buffer is full, an event waits for room or is dropped, or is spilled to a
+ * file then written once the buffer is idle, depending on the {@code overflow-policy}. The buffer is flushed when the
+ * application stops.
+ * <p>
+ * The data of new events is stored in the {@code storage-layout} of {@link PersistentAuditEvent}, either one JSON
+ * column, or one row per entry, truncated to its columns. Events are found by {@link #find} once written. The
+ * {@code audit.events} metrics give the events pending in the buffer, the lag between the publication and the write
+ * of each batch, the batch sizes, and the dropped events.
+ */
+@Component
+@ConditionalOnProperty(prefix = "application.audit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AsyncAuditEventRepository implements AuditEventRepository, SmartLifecycle {
+
+    public static final String METRIC_PREFIX = "audit.events";
+
+    /**
+     * Should be the same as in Liquibase migration.
+     */
+    static final int PRINCIPAL_MAX_LENGTH = 50;
+
+    static final int DATA_NAME_MAX_LENGTH = 150;
+
+    static final int DATA_VALUE_MAX_LENGTH = 255;
+
+    private static final String AUTHORIZATION_FAILURE = "AUTHORIZATION_FAILURE";
+
+    private static final String SPILL_FILE = "audit-events.ndjson";
+
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Logger log = LoggerFactory.getLogger(AsyncAuditEventRepository.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationProperties.Audit properties;
+
+    private final RingBuffer<Pending> buffer;
+
+    private final Path spillDirectory;
+
+    private final Object spillLock = new Object();
+
+    /**
+     * The events added to the buffer, and the ones the writer is done with, written or dropped.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong handled = new AtomicLong();
+
+    private volatile Thread writer;
+
+    private volatile boolean running;
+
+    private final Counter written;
+
+    private final Counter spilled;
+
+    private final Counter droppedOverflow;
+
+    private final Counter droppedWriteFailed;
+
+    private final Counter droppedSpillFailed;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer lag;
+
+    public AsyncAuditEventRepository(PersistenceAuditEventRepository persistenceAuditEventRepository,
+                                     AuditEventConverter auditEventConverter, PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper, ApplicationProperties applicationProperties,
+                                     MeterRegistry meterRegistry) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.auditEventConverter = auditEventConverter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.properties = applicationProperties.getAudit();
+        this.buffer = new RingBuffer<>(properties.getBufferSize());
+        this.spillDirectory = Paths.get(properties.getSpillDirectory());
+        this.written = Counter.builder(METRIC_PREFIX + ".written")
+            .description("Number of audit events written to the database")
+            .register(meterRegistry);
+        this.spilled = Counter.builder(METRIC_PREFIX + ".spilled")
+            .description("Number of audit events spilled to a file because the buffer was full")
+            .register(meterRegistry);
+        this.droppedOverflow = dropped("overflow", meterRegistry);
+        this.droppedWriteFailed = dropped("write_failed", meterRegistry);
+        this.droppedSpillFailed = dropped("spill_failed", meterRegistry);
+        this.batchSize = DistributionSummary.builder(METRIC_PREFIX + ".batch.size")
+            .description("Number of audit events written per transaction")
+            .register(meterRegistry);
+        this.lag = Timer.builder(METRIC_PREFIX + ".lag")
+            .description("Time between the publication of the oldest audit event of a batch and its write")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".pending", buffer, RingBuffer::size)
+            .description("Number of audit events waiting in the buffer")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void add(AuditEvent event) {
+        if (AUTHORIZATION_FAILURE.equals(event.getType())) {
+            return;
+        }
+        PersistentAuditEvent persistentAuditEvent = toPersistentAuditEvent(event);
+        Pending pending = new Pending(persistentAuditEvent, System.nanoTime());
+        if (buffer.offer(pending)) {
+            accepted();
+            return;
+        }
+        OverflowPolicy policy = properties.getOverflowPolicy();
+        if (policy == OverflowPolicy.BLOCK && offerWithin(pending, TimeUnit.MILLISECONDS.toNanos(properties.getBlockTimeoutMillis()))) {
+            accepted();
+        } else if (policy == OverflowPolicy.SPILL) {
+            spill(Collections.singletonList(persistentAuditEvent));
+        } else {
+            droppedOverflow.increment();
+            log.debug("Dropped audit event, the buffer is full: {}", persistentAuditEvent);
+        }
+    }
+
+    @Override
+    public List<AuditEvent> find(String principal, Instant after, String type) {
+        // The data of the events using the table layout is loaded lazily
+        return readOnlyTransactionTemplate.execute(status -> auditEventConverter.convertToAuditEvent(
+            persistenceAuditEventRepository.findAllMatching(principal, after, type)));
+    }
+
+    /**
+     * Wait until the events published so far are written, or dropped.
+     *
+     * @param timeoutMillis the maximum time to wait.
+     * @return whether they were, before the timeout.
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = accepted.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (handled.get() < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "audit-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        log.debug("Started the audit event writer");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writer;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(properties.getShutdownTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("The audit event writer did not stop within {} ms, {} events pending",
+                properties.getShutdownTimeoutMillis(), buffer.size());
+            return;
+        }
+        // Events published while the writer was stopping
+        List<Pending> remaining = new ArrayList<>();
+        buffer.drainTo(remaining, Integer.MAX_VALUE);
+        if (!remaining.isEmpty()) {
+            writeBatch(remaining);
+        }
+        log.debug("Stopped the audit event writer");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !buffer.isEmpty()) {
+            try {
+                buffer.drainTo(batch, properties.getBatchSize());
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                    batch.clear();
+                } else if (running && !replaySpilled()) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMillis()));
+                }
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in the audit event writer", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void accepted() {
+        accepted.incrementAndGet();
+        if (buffer.size() >= properties.getBatchSize()) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private boolean offerWithin(Pending pending, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        do {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (buffer.offer(pending)) {
+                return true;
+            }
+        } while (System.nanoTime() - deadline < 0);
+        return false;
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        List<PersistentAuditEvent> events = new ArrayList<>(batch.size());
+        long oldest = batch.get(0).publishedAt;
+        for (Pending pending : batch) {
+            events.add(pending.event);
+            oldest = Math.min(oldest, pending.publishedAt);
+        }
+        save(events);
+        lag.record(System.nanoTime() - oldest, TimeUnit.NANOSECONDS);
+        handled.addAndGet(batch.size());
+    }
+
+    private void save(List<PersistentAuditEvent> events) {
+        try {
+            transactionTemplate.execute(status -> persistenceAuditEventRepository.saveAll(events));
+            written.increment(events.size());
+            batchSize.record(events.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not write a batch of {} audit events, writing them one by one: {}", events.size(), e.getMessage());
+            for (PersistentAuditEvent event : events) {
+                event.setId(null);
+                try {
+                    transactionTemplate.execute(status -> persistenceAuditEventRepository.save(event));
+                    written.increment();
+                    batchSize.record(1);
+                } catch (RuntimeException eventException) {
+                    droppedWriteFailed.increment();
+                    log.warn("Dropped audit event {}: {}", event, eventException.getMessage());
+                }
+            }
+        }
+    }
+
+    private void spill(List<PersistentAuditEvent> events) {
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillDirectory);
+                try (BufferedWriter out = Files.newBufferedWriter(spillDirectory.resolve(SPILL_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (PersistentAuditEvent event : events) {
+                        out.write(objectMapper.writeValueAsString(event));
+                        out.newLine();
+                    }
+                }
+                spilled.increment(events.size());
+            } catch (IOException e) {
+                droppedSpillFailed.increment(events.size());
+                log.warn("Dropped {} audit events, they could not be spilled to {}: {}", events.size(), spillDirectory,
+                    e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the spilled events, including the ones of a replay interrupted by a stop.
+     *
+     * @return whether there were any.
+     */
+    private boolean replaySpilled() {
+        if (!Files.isDirectory(spillDirectory)) {
+            return false;
+        }
+        List<Path> files = new ArrayList<>();
+        try {
+            synchronized (spillLock) {
+                Path spillFile = spillDirectory.resolve(SPILL_FILE);
+                if (Files.exists(spillFile)) {
+                    Files.move(spillFile, spillDirectory.resolve(SPILL_FILE + "." + System.currentTimeMillis() + REPLAY_SUFFIX));
+                }
+            }
+            try (DirectoryStream<Path> replays = Files.newDirectoryStream(spillDirectory, SPILL_FILE + ".*" + REPLAY_SUFFIX)) {
+                replays.forEach(files::add);
+            }
+            Collections.sort(files);
+            for (Path file : files) {
+                replay(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not replay the audit events spilled to {}: {}", spillDirectory, e.getMessage());
+            return false;
+        }
+        return !files.isEmpty();
+    }
+
+    private void replay(Path file) throws IOException {
+        int count = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<PersistentAuditEvent> events = new ArrayList<>(properties.getBatchSize());
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                events.add(objectMapper.readValue(line, PersistentAuditEvent.class));
+                if (events.size() == properties.getBatchSize()) {
+                    save(events);
+                    count += events.size();
+                    events = new ArrayList<>(properties.getBatchSize());
+                }
+            }
+            if (!events.isEmpty()) {
+                save(events);
+                count += events.size();
+            }
+        }
+        Files.delete(file);
+        log.info("Wrote {} audit events spilled to {}", count, file);
+    }
+
+    private PersistentAuditEvent toPersistentAuditEvent(AuditEvent event) {
+        PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
+        persistentAuditEvent.setPrincipal(truncate(event.getPrincipal(), PRINCIPAL_MAX_LENGTH));
+        persistentAuditEvent.setAuditEventType(event.getType());
+        persistentAuditEvent.setAuditEventDate(event.getTimestamp());
+        Map<String, String> data = auditEventConverter.convertDataToStrings(event.getData());
+        if (properties.getStorageLayout() == StorageLayout.JSON) {
+            persistentAuditEvent.setCompactData(data);
+            return persistentAuditEvent;
+        }
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            persistentAuditEvent.getData().put(truncate(entry.getKey(), DATA_NAME_MAX_LENGTH),
+                truncate(entry.getValue(), DATA_VALUE_MAX_LENGTH));
+        }
+        return persistentAuditEvent;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    private static Counter dropped(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder(METRIC_PREFIX + ".dropped")
+            .description("Number of audit events dropped, by reason")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    /**
+     * An event in the buffer, with the {@link System#nanoTime()} of its publication.
+     */
+    private static final class Pending {
+
+        private final PersistentAuditEvent event;
+
+        private final long publishedAt;
+
+        private Pending(PersistentAuditEvent event, long publishedAt) {
+            this.event = event;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
@@ -30,6 +30,8 @@ public class AuditEventConverter {
 
     /**
      * Convert a {@link PersistentAuditEvent} to an {@link AuditEvent}.
+     * <p>
+     * The data is read from the JSON column of the event when it has one, and from its data table otherwise.
      *
      * @param persistentAuditEvent the event to convert.
      * @return the converted list.
@@ -38,8 +40,10 @@ public class AuditEventConverter {
         if (persistentAuditEvent == null) {
             return null;
         }
+        Map<String, String> data = persistentAuditEvent.getCompactData() != null
+            ? persistentAuditEvent.getCompactData() : persistentAuditEvent.getData();
         return new AuditEvent(persistentAuditEvent.getAuditEventDate(), persistentAuditEvent.getPrincipal(),
-            persistentAuditEvent.getAuditEventType(), convertDataToObjects(persistentAuditEvent.getData()));
+            persistentAuditEvent.getAuditEventType(), convertDataToObjects(data));
     }
 
     /**
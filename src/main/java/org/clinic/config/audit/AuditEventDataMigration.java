@@ -0,0 +1,130 @@
+package org.clinic.config.audit;
+
+import org.clinic.domain.StringMapJsonConverter;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Liquibase change copying the data of the audit events, from one row per entry of
+ * {@code jhi_persistent_audit_evt_data}, to the JSON {@code event_data} column of {@code jhi_persistent_audit_event}.
+ * <p>
+ * The events are migrated in pages of {@value #BATCH_SIZE}, in the order of their ids: each page reads the entries of
+ * its events, updates the events in one JDBC batch and is committed, so neither the entries nor the updates of the
+ * whole table are held at once. Events that already have JSON data are left as they are, so a migration interrupted
+ * between two pages resumes where it stopped; the rows of the data table are kept.
+ */
+public class AuditEventDataMigration implements CustomTaskChange {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final StringMapJsonConverter converter = new StringMapJsonConverter();
+
+    private final int batchSize;
+
+    private int migrated;
+
+    public AuditEventDataMigration() {
+        this(BATCH_SIZE);
+    }
+
+    AuditEventDataMigration(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        try (PreparedStatement selectIds = connection.prepareStatement(
+                 "select distinct event_id from jhi_persistent_audit_evt_data where event_id > ? order by event_id");
+             PreparedStatement selectEntries = connection.prepareStatement(
+                 "select event_id, name, value from jhi_persistent_audit_evt_data"
+                     + " where event_id > ? and event_id <= ? order by event_id");
+             PreparedStatement update = connection.prepareStatement(
+                 "update jhi_persistent_audit_event set event_data = ? where event_id = ? and event_data is null")) {
+            selectIds.setMaxRows(batchSize);
+            long after = Long.MIN_VALUE;
+            Long last;
+            while ((last = lastEventId(selectIds, after)) != null) {
+                selectEntries.setLong(1, after);
+                selectEntries.setLong(2, last);
+                try (ResultSet entries = selectEntries.executeQuery()) {
+                    addUpdates(update, entries);
+                }
+                update.executeBatch();
+                connection.commit();
+                after = last;
+            }
+        } catch (DatabaseException | SQLException e) {
+            throw new CustomChangeException("Could not copy the audit event data to the event_data column", e);
+        }
+    }
+
+    /**
+     * @return the last id of the next page of events having data entries, or {@code null} if there are none left.
+     */
+    private static Long lastEventId(PreparedStatement selectIds, long after) throws SQLException {
+        selectIds.setLong(1, after);
+        Long last = null;
+        try (ResultSet ids = selectIds.executeQuery()) {
+            while (ids.next()) {
+                last = ids.getLong(1);
+            }
+        }
+        return last;
+    }
+
+    private void addUpdates(PreparedStatement update, ResultSet entries) throws SQLException {
+        Long eventId = null;
+        Map<String, String> data = new HashMap<>();
+        while (entries.next()) {
+            long id = entries.getLong(1);
+            if (eventId != null && id != eventId) {
+                addUpdate(update, eventId, data);
+                data = new HashMap<>();
+            }
+            eventId = id;
+            data.put(entries.getString(2), entries.getString(3));
+        }
+        if (eventId != null) {
+            addUpdate(update, eventId, data);
+        }
+    }
+
+    private void addUpdate(PreparedStatement update, long eventId, Map<String, String> data) throws SQLException {
+        update.setString(1, converter.convertToDatabaseColumn(data));
+        update.setLong(2, eventId);
+        update.addBatch();
+        migrated++;
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Copied the data of " + migrated + " audit events to the event_data column";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
@@ -1,5 +1,9 @@
 package org.clinic.domain;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -9,6 +13,10 @@ import java.util.Map;
 
 /**
  * Persist AuditEvent managed by the Spring Boot actuator.
+ * <p>
+ * The data of an event is stored in one of two layouts: as JSON in the {@code event_data} column of the event,
+ * see {@link #getCompactData()}, or as one row per entry in {@code jhi_persistent_audit_evt_data}, see
+ * {@link #getData()}. Events written before the JSON layout have been copied to it by a migration.
  *
  * @see org.springframework.boot.actuate.audit.AuditEvent
  */
@@ -19,7 +27,13 @@ public class PersistentAuditEvent implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "persistentAuditEventIdGenerator")
+    @GenericGenerator(name = "persistentAuditEventIdGenerator", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+        @Parameter(name = "table_name", value = "id_generator"),
+        @Parameter(name = "segment_value", value = "jhi_persistent_audit_event"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     @Column(name = "event_id")
     private Long id;
 
@@ -34,11 +48,17 @@ public class PersistentAuditEvent implements Serializable {
     private String auditEventType;
 
     @ElementCollection
+    @BatchSize(size = 100)
     @MapKeyColumn(name = "name")
     @Column(name = "value")
     @CollectionTable(name = "jhi_persistent_audit_evt_data", joinColumns=@JoinColumn(name="event_id"))
     private Map<String, String> data = new HashMap<>();
 
+    @Lob
+    @Column(name = "event_data")
+    @Convert(converter = StringMapJsonConverter.class)
+    private Map<String, String> compactData;
+
     public Long getId() {
         return id;
     }
@@ -79,6 +99,17 @@ public class PersistentAuditEvent implements Serializable {
         this.data = data;
     }
 
+    /**
+     * @return the data, in the JSON layout; {@code null} if the event uses the table layout.
+     */
+    public Map<String, String> getCompactData() {
+        return compactData;
+    }
+
+    public void setCompactData(Map<String, String> compactData) {
+        this.compactData = compactData;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,47 @@
+package org.clinic.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores a map of strings in a single column, as a compact JSON object whose keys are sorted.
+ */
+@Converter
+public class StringMapJsonConverter implements AttributeConverter<Map<String, String>, String> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<TreeMap<String, String>> MAP_TYPE = new TypeReference<TreeMap<String, String>>() {
+    };
+
+    @Override
+    public String convertToDatabaseColumn(Map<String, String> map) {
+        if (map == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(new TreeMap<>(map));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize the map", e);
+        }
+    }
+
+    @Override
+    public Map<String, String> convertToEntityAttribute(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.readValue(json, MAP_TYPE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not deserialize the map: " + json, e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.clinic.domain;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A UserImportCheckpoint: the number of rows of a user import already committed, saved with each chunk so an
+ * interrupted import can resume after them.
+ */
+@Entity
+@Table(name = "user_import_checkpoint")
+public class UserImportCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "import_id", length = 64)
+    private String importId;
+
+    @Column(name = "rows_committed", nullable = false)
+    private long rowsCommitted;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public UserImportCheckpoint importId(String importId) {
+        this.importId = importId;
+        return this;
+    }
+
+    public void setImportId(String importId) {
+        this.importId = importId;
+    }
+
+    public long getRowsCommitted() {
+        return rowsCommitted;
+    }
+
+    public UserImportCheckpoint rowsCommitted(long rowsCommitted) {
+        this.rowsCommitted = rowsCommitted;
+        return this;
+    }
+
+    public void setRowsCommitted(long rowsCommitted) {
+        this.rowsCommitted = rowsCommitted;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public UserImportCheckpoint updatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+        return this;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UserImportCheckpoint)) {
+            return false;
+        }
+        return importId != null && importId.equals(((UserImportCheckpoint) o).importId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserImportCheckpoint{" +
+            "importId='" + getImportId() + "'" +
+            ", rowsCommitted=" + getRowsCommitted() +
+            ", updatedAt='" + getUpdatedAt() + "'" +
+            "}";
+    }
+}
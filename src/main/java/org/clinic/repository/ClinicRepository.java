@@ -2,13 +2,59 @@ package org.clinic.repository;
 
 import org.clinic.domain.Clinic;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 /**
  * Spring Data  repository for the Clinic entity.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ClinicRepository extends JpaRepository<Clinic, Long> {
+
+    String CLINICS_BY_ID_CACHE = "clinicsById";
+
+    /**
+     * First page of a keyset scan, ordered by id.
+     */
+    List<Clinic> findAllByOrderByIdAsc(Pageable pageable);
+
+    /**
+     * Next page of a keyset scan: seeks past {@code id} on the primary key index, so every page costs the same
+     * regardless of how deep the caller is into the table.
+     */
+    List<Clinic> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Stream every clinic, ordered by id, with a JDBC fetch size so the driver does not buffer the whole result set.
+     * Must be consumed inside a read-only transaction, and the stream must be closed by the caller.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("select clinic from Clinic clinic order by clinic.id")
+    Stream<Clinic> streamAllByOrderByIdAsc();
+
+    /**
+     * Delete the clinics with the given ids in a single statement, without loading them.
+     * Hibernate evicts the whole Clinic second-level cache region after a bulk delete.
+     *
+     * @return the number of deleted clinics.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Clinic clinic where clinic.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
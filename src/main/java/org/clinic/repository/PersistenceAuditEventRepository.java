@@ -0,0 +1,30 @@
+package org.clinic.repository;
+
+import org.clinic.domain.PersistentAuditEvent;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the PersistentAuditEvent entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface PersistenceAuditEventRepository extends JpaRepository<PersistentAuditEvent, Long> {
+
+    /**
+     * The events matching the given criteria, each one ignored when {@code null}; the data of the events using the
+     * table layout is loaded lazily, in batches.
+     */
+    @Query("select event from PersistentAuditEvent event" +
+        " where (:principal is null or event.principal = :principal)" +
+        " and (:after is null or event.auditEventDate > :after)" +
+        " and (:type is null or event.auditEventType = :type)" +
+        " order by event.auditEventDate")
+    List<PersistentAuditEvent> findAllMatching(@Param("principal") String principal, @Param("after") Instant after,
+                                               @Param("type") String type);
+}
@@ -0,0 +1,45 @@
+package org.clinic.repository;
+
+import org.clinic.domain.RefreshToken;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Spring Data  repository for the RefreshToken entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    /**
+     * Find a token and its user in a single query, on the unique index of the token hash.
+     */
+    @Query("select token from RefreshToken token join fetch token.user where token.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHash(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Use up a token, unless a concurrent refresh already did.
+     *
+     * @return 1 if the token was used up by this call, 0 otherwise.
+     */
+    @Modifying
+    @Query("update RefreshToken token set token.used = true where token.id = :id and token.used = false")
+    int markUsed(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from RefreshToken token where token.familyId = :familyId")
+    int deleteByFamilyId(@Param("familyId") String familyId);
+
+    @Modifying
+    @Query("delete from RefreshToken token where token.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from RefreshToken token where token.expiresAt < :instant")
+    int deleteByExpiresAtBefore(@Param("instant") Instant instant);
+}
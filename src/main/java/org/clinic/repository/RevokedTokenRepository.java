@@ -0,0 +1,28 @@
+package org.clinic.repository;
+
+import org.clinic.domain.RevokedToken;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the RevokedToken entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    /**
+     * The ids of the revoked tokens that have not expired yet.
+     */
+    @Query("select token.jti from RevokedToken token where token.expiresAt > :instant")
+    List<String> findAllJtiByExpiresAtAfter(@Param("instant") Instant instant);
+
+    @Modifying
+    @Query("delete from RevokedToken token where token.expiresAt < :instant")
+    int deleteByExpiresAtBefore(@Param("instant") Instant instant);
+}
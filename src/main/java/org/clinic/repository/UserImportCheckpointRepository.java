@@ -0,0 +1,14 @@
+package org.clinic.repository;
+
+import org.clinic.domain.UserImportCheckpoint;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data  repository for the UserImportCheckpoint entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface UserImportCheckpointRepository extends JpaRepository<UserImportCheckpoint, String> {
+}
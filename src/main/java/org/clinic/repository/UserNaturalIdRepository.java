@@ -0,0 +1,19 @@
+package org.clinic.repository;
+
+import org.clinic.domain.User;
+
+import java.util.Optional;
+
+/**
+ * Lookups of the User entity by its natural id, the username.
+ */
+public interface UserNaturalIdRepository {
+
+    /**
+     * Find a user by username, going through the Hibernate natural-id cache when the second-level cache is enabled.
+     *
+     * @param username the exact (lowercase) username.
+     * @return the user, if any.
+     */
+    Optional<User> findByUsername(String username);
+}
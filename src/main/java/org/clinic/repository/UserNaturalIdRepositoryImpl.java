@@ -0,0 +1,30 @@
+package org.clinic.repository;
+
+import org.clinic.domain.User;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Optional;
+
+/**
+ * Natural-id lookups for the {@link UserRepository}.
+ * <p>
+ * A derived {@code findByUsername} query always goes to the database; a natural-id load resolves the username to
+ * an id through the natural-id cache region and then reads the entity from the entity region.
+ */
+@Transactional(readOnly = true)
+class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return entityManager.unwrap(Session.class)
+            .bySimpleNaturalId(User.class)
+            .loadOptional(username);
+    }
+}
@@ -3,15 +3,29 @@ package org.clinic.repository;
 import org.clinic.domain.User;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Spring Data  repository for the User entity.
+ * <p>
+ * {@code findByUsername} is implemented as a natural-id lookup, see {@link UserNaturalIdRepository}, and listings
+ * as projections, see {@link UserSummaryRepository}.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository, UserSummaryRepository {
+
+    String USER_DETAILS_BY_USERNAME_CACHE = "userDetailsByUsername";
+
+    String UNKNOWN_USERNAMES_CACHE = "unknownUsernames";
+
+    /**
+     * The usernames among the given ones that are already used, in a single query.
+     */
+    @Query("select existing.username from User existing where existing.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
 }
@@ -0,0 +1,29 @@
+package org.clinic.repository;
+
+import org.clinic.service.dto.UserSummaryDTO;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Listings of the User entity as {@link UserSummaryDTO} projections, which never read the password column.
+ */
+public interface UserSummaryRepository {
+
+    /**
+     * Find a page of users whose names start with the given prefixes.
+     * <p>
+     * Prefixes are matched with {@code like 'prefix%'}, which the indexes on the name columns serve; they are
+     * compared with the collation of the database. The page is ordered by the requested sort, then by id, so pages
+     * are stable. The total is only counted when the page does not tell it.
+     *
+     * @param usernamePrefix the prefix of the username, or {@code null}.
+     * @param firstnamePrefix the prefix of the first name, or {@code null}.
+     * @param lastnamePrefix the prefix of the last name, or {@code null}.
+     * @param pageable the page, whose sort may only use {@code id}, {@code username}, {@code firstname} and
+     *                 {@code lastname}.
+     * @return the page of users.
+     */
+    Page<UserSummaryDTO> findSummaries(String usernamePrefix, String firstnamePrefix, String lastnamePrefix,
+                                       Pageable pageable);
+}
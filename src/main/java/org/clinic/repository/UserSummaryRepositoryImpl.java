@@ -0,0 +1,90 @@
+package org.clinic.repository;
+
+import org.clinic.domain.User;
+import org.clinic.domain.User_;
+import org.clinic.service.dto.UserSummaryDTO;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Projection listings for the {@link UserRepository}, built with the Criteria API so that only the filters given
+ * end up in the query.
+ */
+@Transactional(readOnly = true)
+class UserSummaryRepositoryImpl implements UserSummaryRepository {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<UserSummaryDTO> findSummaries(String usernamePrefix, String firstnamePrefix, String lastnamePrefix,
+                                              Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<UserSummaryDTO> query = cb.createQuery(UserSummaryDTO.class);
+        Root<User> user = query.from(User.class);
+        String id = User_.id.getName();
+        Sort sort = pageable.getSort().getOrderFor(id) == null ? pageable.getSort().and(Sort.by(id)) : pageable.getSort();
+        query.select(cb.construct(UserSummaryDTO.class,
+            user.get(User_.id), user.get(User_.username), user.get(User_.firstname), user.get(User_.lastname)))
+            .where(filters(cb, user, usernamePrefix, firstnamePrefix, lastnamePrefix))
+            .orderBy(QueryUtils.toOrders(sort, user, cb));
+        List<UserSummaryDTO> content = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize())
+            .getResultList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            CriteriaQuery<Long> count = cb.createQuery(Long.class);
+            Root<User> counted = count.from(User.class);
+            count.select(cb.count(counted))
+                .where(filters(cb, counted, usernamePrefix, firstnamePrefix, lastnamePrefix));
+            return entityManager.createQuery(count).getSingleResult();
+        });
+    }
+
+    private static Predicate[] filters(CriteriaBuilder cb, Root<User> user, String usernamePrefix,
+                                       String firstnamePrefix, String lastnamePrefix) {
+        List<Predicate> predicates = new ArrayList<>();
+        addPrefix(predicates, cb, user, User_.username, usernamePrefix);
+        addPrefix(predicates, cb, user, User_.firstname, firstnamePrefix);
+        addPrefix(predicates, cb, user, User_.lastname, lastnamePrefix);
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private static void addPrefix(List<Predicate> predicates, CriteriaBuilder cb, Root<User> user,
+                                  SingularAttribute<User, String> attribute, String prefix) {
+        if (prefix != null && !prefix.isEmpty()) {
+            predicates.add(cb.like(user.get(attribute), escapeLike(prefix) + "%", LIKE_ESCAPE));
+        }
+    }
+
+    private static String escapeLike(String prefix) {
+        StringBuilder escaped = new StringBuilder(prefix.length() + 4);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package org.clinic.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * A Spring Security user that also carries the id of its account, so that a token can be issued for it without
+ * looking the user up again, and whether its stored password hash should be upgraded to the current encoding.
+ */
+public class AccountUserDetails extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long accountId;
+
+    private final boolean passwordUpgradeNeeded;
+
+    public AccountUserDetails(Long accountId, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        this(accountId, username, password, authorities, false);
+    }
+
+    public AccountUserDetails(Long accountId, String username, String password, Collection<? extends GrantedAuthority> authorities,
+                              boolean passwordUpgradeNeeded) {
+        super(username, password, authorities);
+        this.accountId = accountId;
+        this.passwordUpgradeNeeded = passwordUpgradeNeeded;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public boolean isPasswordUpgradeNeeded() {
+        return passwordUpgradeNeeded;
+    }
+}
@@ -0,0 +1,60 @@
+package org.clinic.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The principal of a request authenticated by a token: the login of the user and the id of their account.
+ * <p>
+ * Unlike a Spring Security {@link org.springframework.security.core.userdetails.User}, it carries no password and
+ * no copy of the authorities, which are held by the authentication.
+ */
+public final class AuthenticatedUser implements AuthenticatedPrincipal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String login;
+
+    private final Long accountId;
+
+    public AuthenticatedUser(String login, Long accountId) {
+        this.login = login;
+        this.accountId = accountId;
+    }
+
+    @Override
+    public String getName() {
+        return login;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuthenticatedUser)) {
+            return false;
+        }
+        AuthenticatedUser other = (AuthenticatedUser) o;
+        return login.equals(other.login) && Objects.equals(accountId, other.accountId);
+    }
+
+    @Override
+    public int hashCode() {
+        return login.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "AuthenticatedUser{" +
+            "login='" + login + '\'' +
+            ", accountId=" + accountId +
+            "}";
+    }
+}
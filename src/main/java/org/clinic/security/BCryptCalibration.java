@@ -0,0 +1,149 @@
+package org.clinic.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The BCrypt cost that best matches a target hashing time on the current hardware.
+ * <p>
+ * Hashes are stored with a versioned prefix such as {@code {bcrypt12}}, so the cost can change from one node type
+ * or release to the next: existing hashes, including the unprefixed ones stored before versioning, keep matching,
+ * and {@link PasswordEncoder#upgradeEncoding(String)} reports those below the current cost. Hashes at a higher cost,
+ * written by nodes calibrated on faster hardware, are kept, so nodes of different types do not rehash each other's
+ * passwords back and forth.
+ */
+public final class BCryptCalibration {
+
+    public static final String ID_PREFIX = "bcrypt";
+
+    private static final int MAX_BCRYPT_COST = 31;
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private static final Pattern BCRYPT_HASH = Pattern.compile("\\$2[abxy]?\\$(\\d\\d)\\$");
+
+    private static final Logger log = LoggerFactory.getLogger(BCryptCalibration.class);
+
+    private final int cost;
+
+    private final long hashMillis;
+
+    private BCryptCalibration(int cost, long hashMillis) {
+        this.cost = cost;
+        this.hashMillis = hashMillis;
+    }
+
+    /**
+     * Find the highest cost, between {@code minCost} and {@code maxCost}, that hashes a password in at most
+     * {@code targetMillis}. Each additional cost unit doubles the hashing time, so only the minimum cost and the
+     * chosen one are measured.
+     */
+    public static BCryptCalibration calibrate(long targetMillis, int minCost, int maxCost) {
+        // Warm up, so the first measure does not include class loading and compilation
+        measureNanos(minCost);
+        long minCostNanos = measureNanos(minCost);
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        int cost = minCost;
+        long estimate = Math.max(minCostNanos, 1);
+        while (cost < maxCost && estimate * 2 <= targetNanos) {
+            cost++;
+            estimate *= 2;
+        }
+        long nanos = cost == minCost ? minCostNanos : measureNanos(cost);
+        BCryptCalibration calibration = new BCryptCalibration(cost, TimeUnit.NANOSECONDS.toMillis(nanos));
+        log.info("Calibrated BCrypt cost {} for a target of {} ms: {} ms per hash", cost, targetMillis, calibration.hashMillis);
+        return calibration;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public long getHashMillis() {
+        return hashMillis;
+    }
+
+    /**
+     * Create an encoder hashing at the calibrated cost, matching hashes of any cost, and upgrading those below the
+     * calibrated cost.
+     */
+    public PasswordEncoder createPasswordEncoder() {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(ID_PREFIX, new BCryptPasswordEncoder());
+        for (int strength = 4; strength <= MAX_BCRYPT_COST; strength++) {
+            encoders.put(ID_PREFIX + strength, new BCryptPasswordEncoder(strength));
+        }
+        DelegatingPasswordEncoder passwordEncoder = new CostAwarePasswordEncoder(ID_PREFIX + cost, encoders, cost);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return passwordEncoder;
+    }
+
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder(BoundedPasswordEncoder.METRIC_PREFIX + ".cost", this, BCryptCalibration::getCost)
+            .description("BCrypt cost chosen by the startup calibration")
+            .register(meterRegistry);
+        Gauge.builder(BoundedPasswordEncoder.METRIC_PREFIX + ".calibration.time", this, BCryptCalibration::getHashMillis)
+            .description("Time measured for one hash at the calibrated cost")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    private static long measureNanos(int cost) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        long start = System.nanoTime();
+        encoder.encode(CALIBRATION_PASSWORD);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The cost of a BCrypt hash, with or without a {@code {bcrypt}} or {@code {bcryptNN}} prefix.
+     *
+     * @return the cost, or {@code -1} if the hash is not a BCrypt hash.
+     */
+    private static int storedCost(String prefixEncodedPassword) {
+        if (prefixEncodedPassword == null) {
+            return -1;
+        }
+        String hash = prefixEncodedPassword;
+        if (hash.startsWith("{")) {
+            int end = hash.indexOf('}');
+            if (end < 0 || !hash.substring(1, end).startsWith(ID_PREFIX)) {
+                return -1;
+            }
+            hash = hash.substring(end + 1);
+        }
+        Matcher matcher = BCRYPT_HASH.matcher(hash);
+        return matcher.lookingAt() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * {@link DelegatingPasswordEncoder} comparing the cost of BCrypt hashes rather than their id: the default
+     * implementation upgrades every hash whose id is not the one used for encoding, including hashes at a higher cost.
+     */
+    private static final class CostAwarePasswordEncoder extends DelegatingPasswordEncoder {
+
+        private final int cost;
+
+        private CostAwarePasswordEncoder(String idForEncode, Map<String, PasswordEncoder> encoders, int cost) {
+            super(idForEncode, encoders);
+            this.cost = cost;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String prefixEncodedPassword) {
+            int storedCost = storedCost(prefixEncodedPassword);
+            return storedCost < 0 ? super.upgradeEncoding(prefixEncodedPassword) : storedCost < cost;
+        }
+    }
+}
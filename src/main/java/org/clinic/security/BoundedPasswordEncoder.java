@@ -0,0 +1,161 @@
+package org.clinic.security;
+
+import org.clinic.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link PasswordEncoder} running the hashing work of its delegate on a dedicated, bounded pool.
+ * <p>
+ * Password hashing is deliberately slow, so it is kept off the request threads' CPU budget: at most
+ * {@code application.security.password-hashing.threads} hashes run at once, and at most {@code queue-capacity}
+ * wait for a thread. When the queue is full, or a caller waits longer than {@code wait-timeout-millis}, a
+ * {@link PasswordHashingRejectedException} is thrown, which the API reports as {@code 429 Too Many Requests}.
+ * <p>
+ * The queue depth, the time spent waiting for a thread, the hashing time and the rejections are exported as
+ * {@code password.hashing.*} metrics.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    public static final String METRIC_PREFIX = "password.hashing";
+
+    private final Logger log = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long waitTimeoutMillis;
+
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter queueFullRejections;
+
+    private final Counter timeoutRejections;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, ApplicationProperties.Security.PasswordHashing properties,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.waitTimeoutMillis = properties.getWaitTimeoutMillis();
+        this.retryAfterSeconds = properties.getRetryAfterSeconds();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hashing-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(), 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.getQueueCapacity()), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        log.debug("Hashing passwords on {} threads, with a queue of {}", properties.getThreads(), properties.getQueueCapacity());
+
+        Gauge.builder(METRIC_PREFIX + ".queue.depth", executor, pool -> pool.getQueue().size())
+            .description("Number of password hashes waiting for a thread")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Number of password hashes running")
+            .register(meterRegistry);
+        this.waitTimer = Timer.builder(METRIC_PREFIX + ".wait")
+            .description("Time spent by password hashes waiting for a thread")
+            .register(meterRegistry);
+        this.encodeTimer = hashTimer("encode", meterRegistry);
+        this.matchesTimer = hashTimer("matches", meterRegistry);
+        this.queueFullRejections = rejectionCounter("queue_full", meterRegistry);
+        this.timeoutRejections = rejectionCounter("timeout", meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * @return the delegate, hashing on the calling thread; for batch jobs that bring their own pool, and must not
+     * compete with logins for this one.
+     */
+    public PasswordEncoder getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Stop the hashing threads; called when the application context is closed.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T execute(Callable<T> hashing, Timer hashTimer) {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return hashTimer.recordCallable(hashing);
+            });
+        } catch (RejectedExecutionException e) {
+            queueFullRejections.increment();
+            throw new PasswordHashingRejectedException("The password hashing queue is full", retryAfterSeconds);
+        }
+        try {
+            return future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            timeoutRejections.increment();
+            throw new PasswordHashingRejectedException("Timed out waiting for password hashing", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    private static Timer hashTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder(METRIC_PREFIX + ".time")
+            .description("Time spent hashing passwords")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    private static Counter rejectionCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder(METRIC_PREFIX + ".rejected")
+            .description("Number of password hashes rejected because the hashing pool was saturated")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
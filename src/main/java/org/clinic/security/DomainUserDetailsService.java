@@ -5,13 +5,15 @@ import org.clinic.repository.UserRepository;
 import org.hibernate.validator.internal.constraintvalidators.hv.EmailValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -19,10 +21,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Authenticate a user from the database.
+ * <p>
+ * Loaded users are cached by username, and so are the usernames that do not exist, in the
+ * {@code userDetailsByUsername} and {@code unknownUsernames} caches; code that creates, changes or deletes a user
+ * must call {@link #evictFromCache(String)}. A cached user is copied before being returned, as Spring Security erases
+ * the password of the user it authenticates.
  */
 @Component("userDetailsService")
 public class DomainUserDetailsService implements UserDetailsService {
@@ -31,31 +39,82 @@ public class DomainUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
-    public DomainUserDetailsService(UserRepository userRepository) {
+    private final PasswordEncoder passwordEncoder;
+
+    private final Cache userDetailsCache;
+
+    private final Cache unknownUsernamesCache;
+
+    public DomainUserDetailsService(UserRepository userRepository, PasswordEncoder passwordEncoder, CacheManager cacheManager) {
         this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.userDetailsCache = cacheManager.getCache(UserRepository.USER_DETAILS_BY_USERNAME_CACHE);
+        this.unknownUsernamesCache = cacheManager.getCache(UserRepository.UNKNOWN_USERNAMES_CACHE);
     }
 
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(final String login) {
         log.debug("Authenticating {}", login);
 
         String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
-        return userRepository.findByUsername(lowercaseLogin)
-            .map(user -> createSpringSecurityUser(lowercaseLogin, user))
-            .orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the database"));
+        AccountUserDetails cachedUser = userDetailsCache.get(lowercaseLogin, AccountUserDetails.class);
+        if (cachedUser != null) {
+            return copy(cachedUser);
+        }
+        if (unknownUsernamesCache.get(lowercaseLogin) != null) {
+            throw userNotFound(lowercaseLogin);
+        }
+        Optional<User> user = userRepository.findByUsername(lowercaseLogin);
+        if (!user.isPresent()) {
+            unknownUsernamesCache.put(lowercaseLogin, Boolean.TRUE);
+            throw userNotFound(lowercaseLogin);
+        }
+        AccountUserDetails userDetails = createSpringSecurityUser(lowercaseLogin, user.get());
+        userDetailsCache.put(lowercaseLogin, userDetails);
+        return copy(userDetails);
+    }
+
+    /**
+     * Evict a user from the caches, after it has been created, changed or deleted.
+     *
+     * @param login the login of the user.
+     */
+    public void evictFromCache(String login) {
+        String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
+        userDetailsCache.evict(lowercaseLogin);
+        unknownUsernamesCache.evict(lowercaseLogin);
+    }
+
+    /**
+     * Build the details of a user already loaded, as {@link #loadUserByUsername(String)} would.
+     *
+     * @param user the user.
+     * @return the details of the user.
+     */
+    public AccountUserDetails createUserDetails(User user) {
+        return createSpringSecurityUser(user.getUsername(), user);
+    }
+
+    private static AccountUserDetails copy(AccountUserDetails user) {
+        return new AccountUserDetails(user.getAccountId(), user.getUsername(), user.getPassword(), user.getAuthorities(),
+            user.isPasswordUpgradeNeeded());
+    }
 
+    private static UsernameNotFoundException userNotFound(String lowercaseLogin) {
+        return new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the database");
     }
 
-    private org.springframework.security.core.userdetails.User createSpringSecurityUser(String lowercaseLogin, User user) {
+    private AccountUserDetails createSpringSecurityUser(String lowercaseLogin, User user) {
 
 //        List<GrantedAuthority> grantedAuthorities = user.getAuthorities().stream()
 //            .map(authority -> new SimpleGrantedAuthority(authority.getName()))
 //            .collect(Collectors.toList());
         List<GrantedAuthority> grantedAuthorities = new ArrayList<>();
         grantedAuthorities.add(new SimpleGrantedAuthority("admin"));
-        return new org.springframework.security.core.userdetails.User(user.getUsername(),
+        return new AccountUserDetails(user.getId(),
+            user.getUsername(),
             user.getPassword(),
-            grantedAuthorities);
+            grantedAuthorities,
+            passwordEncoder.upgradeEncoding(user.getPassword()));
     }
 }
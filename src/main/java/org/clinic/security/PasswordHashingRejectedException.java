@@ -0,0 +1,21 @@
+package org.clinic.security;
+
+/**
+ * This exception is thrown when a password cannot be hashed or checked because the password hashing pool is
+ * saturated; the client should retry later.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,56 @@
+package org.clinic.security.jwt;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical, immutable authority lists, keyed by the raw {@code auth} claim of a token.
+ * <p>
+ * Tokens carry one of a handful of authority combinations, so each claim is parsed once and the same list is shared
+ * by every request. Claims are signed by this application, but the registry is bounded all the same: past
+ * {@code maxSize} distinct claims, new ones are parsed on every call.
+ */
+final class AuthoritySetRegistry {
+
+    private final int maxSize;
+
+    private final ConcurrentMap<String, List<GrantedAuthority>> authoritySets = new ConcurrentHashMap<>();
+
+    AuthoritySetRegistry(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    List<GrantedAuthority> get(String claim) {
+        List<GrantedAuthority> authorities = authoritySets.get(claim);
+        if (authorities != null) {
+            return authorities;
+        }
+        authorities = parse(claim);
+        if (authoritySets.size() >= maxSize) {
+            return authorities;
+        }
+        List<GrantedAuthority> previous = authoritySets.putIfAbsent(claim, authorities);
+        return previous != null ? previous : authorities;
+    }
+
+    int size() {
+        return authoritySets.size();
+    }
+
+    private static List<GrantedAuthority> parse(String claim) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String authority : StringUtils.commaDelimitedListToStringArray(claim)) {
+            if (!authority.isEmpty()) {
+                authorities.add(new SimpleGrantedAuthority(authority));
+            }
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+}
@@ -0,0 +1,116 @@
+package org.clinic.security.jwt;
+
+import java.util.Collection;
+
+/**
+ * An immutable Bloom filter of strings, sized for its content and a target false positive probability.
+ * <p>
+ * Each value is hashed once to 64 bits; the probe positions are derived from that hash by double hashing, so a
+ * lookup costs one pass over the string and {@code numHashes} reads of the bit array. Instances are never modified
+ * after construction, and can be shared between threads once safely published.
+ */
+final class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+
+    private final long numBits;
+
+    private final int numHashes;
+
+    private final int size;
+
+    private BloomFilter(long numBits, int numHashes, int size) {
+        this.bits = new long[(int) ((numBits + 63) / 64)];
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.size = size;
+    }
+
+    /**
+     * @param values the values of the filter.
+     * @param falsePositiveProbability the target probability that a value not in the filter is reported as in it.
+     * @return the filter.
+     */
+    static BloomFilter of(Collection<String> values, double falsePositiveProbability) {
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("The false positive probability must be between 0 and 1: " + falsePositiveProbability);
+        }
+        int expected = Math.max(values.size(), 1);
+        long numBits = Math.max(64, (long) Math.ceil(-expected * Math.log(falsePositiveProbability) / (LN2 * LN2)));
+        int numHashes = Math.max(1, (int) Math.round((double) numBits / expected * LN2));
+        BloomFilter filter = new BloomFilter(numBits, numHashes, values.size());
+        for (String value : values) {
+            filter.add(value);
+        }
+        return filter;
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        long step = step(hash);
+        for (int i = 0; i < numHashes; i++) {
+            long index = Math.floorMod(hash + i * step, numBits);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of values in the filter.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the probability that a value not in the filter is reported as in it, estimated from the bits set.
+     */
+    double expectedFalsePositiveProbability() {
+        long set = 0;
+        for (long word : bits) {
+            set += Long.bitCount(word);
+        }
+        return Math.pow((double) set / numBits, numHashes);
+    }
+
+    private void add(String value) {
+        long hash = hash(value);
+        long step = step(hash);
+        for (int i = 0; i < numHashes; i++) {
+            long index = Math.floorMod(hash + i * step, numBits);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters, finished with the MurmurHash3 mix so every bit depends on every character.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The second hash of the double hashing, never zero so the probes of a value do not all fall on one bit.
+     */
+    private static long step(long hash) {
+        return mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -1,5 +1,7 @@
 package org.clinic.security.jwt;
 
+import org.clinic.security.ratelimit.RateLimitFilter;
+
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.DefaultSecurityFilterChain;
@@ -9,13 +11,28 @@ public class JWTConfigurer extends SecurityConfigurerAdapter<DefaultSecurityFilt
 
     private TokenProvider tokenProvider;
 
+    private RateLimitFilter rateLimitFilter;
+
     public JWTConfigurer(TokenProvider tokenProvider) {
+        this(tokenProvider, null);
+    }
+
+    /**
+     * @param tokenProvider the provider verifying the tokens.
+     * @param rateLimitFilter the filter to run before the {@link JWTFilter}, or {@code null} if requests are not
+     *                        rate limited.
+     */
+    public JWTConfigurer(TokenProvider tokenProvider, RateLimitFilter rateLimitFilter) {
         this.tokenProvider = tokenProvider;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
     @Override
     public void configure(HttpSecurity http) throws Exception {
         JWTFilter customFilter = new JWTFilter(tokenProvider);
         http.addFilterBefore(customFilter, UsernamePasswordAuthenticationFilter.class);
+        if (rateLimitFilter != null) {
+            http.addFilterBefore(rateLimitFilter, JWTFilter.class);
+        }
     }
 }
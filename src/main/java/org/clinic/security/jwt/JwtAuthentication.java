@@ -0,0 +1,98 @@
+package org.clinic.security.jwt;
+
+import org.clinic.security.AuthenticatedUser;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * An immutable authentication built from a verified JWT token, or held as the session of a reference token.
+ * <p>
+ * Its authorities are the shared, unmodifiable list of an {@link AuthoritySetRegistry}, so creating one allocates
+ * nothing else, and a single instance can be reused for every request presenting the same token.
+ */
+public final class JwtAuthentication implements Authentication {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AuthenticatedUser principal;
+
+    private final String token;
+
+    private final List<GrantedAuthority> authorities;
+
+    private final String tokenId;
+
+    private final Instant expiration;
+
+    JwtAuthentication(AuthenticatedUser principal, String token, List<GrantedAuthority> authorities, String tokenId,
+                      Instant expiration) {
+        this.principal = principal;
+        this.token = token;
+        this.authorities = authorities;
+        this.tokenId = tokenId;
+        this.expiration = expiration;
+    }
+
+    @Override
+    public String getName() {
+        return principal.getName();
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getCredentials() {
+        return token;
+    }
+
+    @Override
+    public Object getDetails() {
+        return null;
+    }
+
+    @Override
+    public AuthenticatedUser getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * @return the jti of the token, or {@code null} for tokens issued without one, which cannot be revoked.
+     */
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * @return the expiration of the token, or {@code null} if it does not expire.
+     */
+    public Instant getExpiration() {
+        return expiration;
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException always, as a token authentication is shared and cannot be changed.
+     */
+    @Override
+    public void setAuthenticated(boolean authenticated) {
+        throw new IllegalArgumentException("A JWT authentication is immutable");
+    }
+
+    @Override
+    public String toString() {
+        return "JwtAuthentication{" +
+            "principal=" + principal +
+            ", authorities=" + authorities +
+            "}";
+    }
+}
@@ -0,0 +1,95 @@
+package org.clinic.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sessions of the opaque reference tokens, held in memory by the instance that issued them.
+ * <p>
+ * A reference token is 192 random bits, encoded as 32 base64url characters; it carries no claims, and resolving it
+ * is a single lookup, with no signature to check. The session of a token is the {@link JwtAuthentication} it
+ * resolves to, which shares its authority list with every other session of the same authorities. Sessions expire
+ * with their token, and the least recently used ones are dropped past {@code maximumSessions}.
+ */
+final class ReferenceTokenStore {
+
+    private static final int TOKEN_BYTES = 24;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final Cache<String, JwtAuthentication> sessions;
+
+    ReferenceTokenStore(long maximumSessions) {
+        this.sessions = Caffeine.newBuilder()
+            .maximumSize(maximumSessions)
+            .expireAfter(new UntilSessionExpiration())
+            .build();
+    }
+
+    /**
+     * @return a new random reference token, not yet stored.
+     */
+    String nextToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @param session the session of a new token, whose credentials are the token.
+     */
+    void put(JwtAuthentication session) {
+        sessions.put(session.getCredentials(), session);
+    }
+
+    /**
+     * @param token a reference token.
+     * @return its session, or empty if the token is unknown, expired or revoked.
+     */
+    Optional<JwtAuthentication> get(String token) {
+        return Optional.ofNullable(sessions.getIfPresent(token));
+    }
+
+    /**
+     * @param token a reference token.
+     * @return whether the token had a session.
+     */
+    boolean remove(String token) {
+        return sessions.asMap().remove(token) != null;
+    }
+
+    /**
+     * @return the approximate number of sessions.
+     */
+    long size() {
+        return sessions.estimatedSize();
+    }
+
+    private static final class UntilSessionExpiration implements Expiry<String, JwtAuthentication> {
+
+        @Override
+        public long expireAfterCreate(String token, JwtAuthentication session, long currentTime) {
+            if (session.getExpiration() == null) {
+                return Long.MAX_VALUE;
+            }
+            long untilExpiration = TimeUnit.MILLISECONDS.toNanos(session.getExpiration().toEpochMilli() - System.currentTimeMillis());
+            return Math.max(0, untilExpiration);
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, JwtAuthentication session, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, session, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, JwtAuthentication session, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,34 +1,55 @@
 package org.clinic.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.github.jhipster.config.JHipsterProperties;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import org.clinic.repository.UserRepository;
+import org.clinic.config.ApplicationProperties;
+import org.clinic.security.AccountUserDetails;
+import org.clinic.security.AuthenticatedUser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
-import java.util.Arrays;
-import java.util.Collection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Creates and verifies JWT tokens.
+ * <p>
+ * A token is verified and parsed once per request, by {@link #authenticate(String)}. When the
+ * {@code application.cache.verified-tokens} region is enabled, verified tokens are cached by SHA-256 digest until
+ * their expiration, so the signature of a token presented again is not checked again, and the same immutable
+ * {@link JwtAuthentication} is returned for it. Invalid tokens are never cached.
+ * <p>
+ * Every token carries a random jti, and is checked against the {@link TokenRevocationList} each time it is
+ * authenticated, whether it was cached or not.
+ * <p>
+ * When {@code application.security.reference-token} is enabled, new tokens are opaque reference tokens instead, whose
+ * session is held by a {@link ReferenceTokenStore}: they are shorter, and resolved without any signature check or
+ * digest, but only by the instance that issued them. JWT tokens issued before are still accepted.
+ */
 @Component
 public class TokenProvider implements InitializingBean {
 
@@ -36,19 +57,35 @@ public class TokenProvider implements InitializingBean {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String ACCOUNT_ID_KEY = "accountId";
+
+    private static final int MAX_AUTHORITY_SETS = 256;
+
+    private final AuthoritySetRegistry authoritySets = new AuthoritySetRegistry(MAX_AUTHORITY_SETS);
+
     private Key key;
 
+    private JwtParser jwtParser;
+
+    private Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    private ReferenceTokenStore referenceTokens;
+
     private long tokenValidityInMilliseconds;
 
     private long tokenValidityInMillisecondsForRememberMe;
 
     private final JHipsterProperties jHipsterProperties;
 
-    @Autowired
-    private UserRepository userRepository;
+    private final ApplicationProperties applicationProperties;
+
+    private final TokenRevocationList tokenRevocationList;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    public TokenProvider(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+                         TokenRevocationList tokenRevocationList) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.tokenRevocationList = tokenRevocationList;
     }
 
     @Override
@@ -64,11 +101,23 @@ public class TokenProvider implements InitializingBean {
             keyBytes = Decoders.BASE64.decode(jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret());
         }
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
         this.tokenValidityInMilliseconds =
-            jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
+            1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
         this.tokenValidityInMillisecondsForRememberMe =
-            jHipsterProperties.getSecurity().getAuthentication().getJwt()
+            1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt()
                 .getTokenValidityInSecondsForRememberMe();
+        ApplicationProperties.Cache.Region region = applicationProperties.getCache().getVerifiedTokens();
+        if (region.isEnabled()) {
+            this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(region.getMaximumSize())
+                .expireAfter(new UntilTokenExpiration(TimeUnit.SECONDS.toNanos(region.getTimeToLiveSeconds())))
+                .build();
+        }
+        ApplicationProperties.Security.ReferenceToken referenceToken = applicationProperties.getSecurity().getReferenceToken();
+        if (referenceToken.isEnabled()) {
+            this.referenceTokens = new ReferenceTokenStore(referenceToken.getMaximumSessions());
+        }
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
@@ -84,42 +133,168 @@ public class TokenProvider implements InitializingBean {
             validity = new Date(now + this.tokenValidityInMilliseconds);
         }
 
-        String lowercaseLogin = authentication.getName().toLowerCase(Locale.ENGLISH);
-        Optional<org.clinic.domain.User> userByLoginFromDatabase = userRepository.findByUsername(lowercaseLogin);
-
+        if (referenceTokens != null) {
+            String token = referenceTokens.nextToken();
+            AuthenticatedUser principal = new AuthenticatedUser(authentication.getName(), getAccountId(authentication));
+            referenceTokens.put(new JwtAuthentication(principal, token, authoritySets.get(authorities), null, validity.toInstant()));
+            return token;
+        }
         return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
-            .claim("accountId", userByLoginFromDatabase.get().getId())
+            .claim(ACCOUNT_ID_KEY, getAccountId(authentication))
             .signWith(SignatureAlgorithm.HS512, key)
             .setExpiration(validity)
             .compact();
     }
 
+    /**
+     * Verify a token and build the corresponding authentication, in a single parsing pass.
+     *
+     * @param token the JWT or reference token.
+     * @return the authentication, or empty if the token is not valid or has been revoked.
+     */
+    public Optional<Authentication> authenticate(String token) {
+        if (isReferenceToken(token)) {
+            return referenceTokens.get(token).map(Authentication.class::cast);
+        }
+        if (verifiedTokens == null) {
+            return verify(token).filter(this::isNotRevoked).map(verified -> verified.authentication);
+        }
+        ByteBuffer digest = digest(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified == null) {
+            Optional<VerifiedToken> verification = verify(token);
+            if (!verification.isPresent()) {
+                return Optional.empty();
+            }
+            verified = verification.get();
+            verifiedTokens.put(digest, verified);
+        }
+        return isNotRevoked(verified) ? Optional.of(verified.authentication) : Optional.empty();
+    }
+
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-            .setSigningKey(key)
-            .parseClaimsJws(token)
-            .getBody();
+        return toAuthentication(jwtParser.parseClaimsJws(token).getBody(), token);
+    }
 
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    public boolean validateToken(String authToken) {
+        if (isReferenceToken(authToken)) {
+            return referenceTokens.get(authToken).isPresent();
+        }
+        return verify(authToken).filter(this::isNotRevoked).isPresent();
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    /**
+     * Revoke a token before its expiration: a reference token loses its session, and a JWT token is added to the
+     * {@link TokenRevocationList}.
+     *
+     * @param authentication the authentication of the token.
+     */
+    public void revoke(JwtAuthentication authentication) {
+        if (isReferenceToken(authentication.getCredentials())) {
+            referenceTokens.remove(authentication.getCredentials());
+        } else if (authentication.getTokenId() != null && authentication.getExpiration() != null) {
+            tokenRevocationList.revoke(authentication.getTokenId(), authentication.getExpiration());
+        }
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    /**
+     * A JWT token always has dots between its parts, and a reference token never has any.
+     */
+    private boolean isReferenceToken(String token) {
+        return referenceTokens != null && token.indexOf('.') < 0;
     }
 
-    public boolean validateToken(String authToken) {
+    private boolean isNotRevoked(VerifiedToken verified) {
+        if (tokenRevocationList.isRevoked(verified.authentication.getTokenId())) {
+            log.info("Revoked JWT token.");
+            return false;
+        }
+        return true;
+    }
+
+    private Optional<VerifiedToken> verify(String token) {
         try {
-            Jwts.parser().setSigningKey(key).parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            return Optional.of(new VerifiedToken(toAuthentication(claims, token), claims.getExpiration()));
         } catch (JwtException | IllegalArgumentException e) {
             log.info("Invalid JWT token.");
             log.trace("Invalid JWT token trace.", e);
         }
-        return false;
+        return Optional.empty();
+    }
+
+    /**
+     * Get the account id of an authenticated user, as loaded by {@link org.clinic.security.DomainUserDetailsService}
+     * or read from a previous token; {@code null} for other principals.
+     */
+    private static Long getAccountId(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof AccountUserDetails) {
+            return ((AccountUserDetails) principal).getAccountId();
+        } else if (principal instanceof AuthenticatedUser) {
+            return ((AuthenticatedUser) principal).getAccountId();
+        }
+        return null;
+    }
+
+    private JwtAuthentication toAuthentication(Claims claims, String token) {
+        List<GrantedAuthority> authorities = authoritySets.get(claims.get(AUTHORITIES_KEY).toString());
+        AuthenticatedUser principal = new AuthenticatedUser(claims.getSubject(), claims.get(ACCOUNT_ID_KEY, Long.class));
+        Instant expiration = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+        return new JwtAuthentication(principal, token, authorities, claims.getId(), expiration);
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class VerifiedToken {
+
+        private final JwtAuthentication authentication;
+
+        private final Date expiration;
+
+        private VerifiedToken(JwtAuthentication authentication, Date expiration) {
+            this.authentication = authentication;
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * Expire a cached token when the token itself expires, and at the latest after the time to live of the region.
+     */
+    private static final class UntilTokenExpiration implements Expiry<ByteBuffer, VerifiedToken> {
+
+        private final long timeToLiveNanos;
+
+        private UntilTokenExpiration(long timeToLiveNanos) {
+            this.timeToLiveNanos = timeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(ByteBuffer digest, VerifiedToken verified, long currentTime) {
+            if (verified.expiration == null) {
+                return timeToLiveNanos;
+            }
+            long untilExpiration = TimeUnit.MILLISECONDS.toNanos(verified.expiration.getTime() - System.currentTimeMillis());
+            return Math.max(0, Math.min(untilExpiration, timeToLiveNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer digest, VerifiedToken verified, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, verified, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer digest, VerifiedToken verified, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
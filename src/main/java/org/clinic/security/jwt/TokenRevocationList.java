@@ -0,0 +1,175 @@
+package org.clinic.security.jwt;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.domain.RevokedToken;
+import org.clinic.repository.RevokedTokenRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The access tokens revoked before their expiration, by jti.
+ * <p>
+ * Revocations are stored in the {@code revoked_token} table. Checking a token, on every request, does not read it:
+ * a token revoked since the last rebuild is found in an exact in-memory set, and the others are tested against a
+ * {@link BloomFilter} of every revocation, rebuilt from the table every {@code rebuild-interval-millis} and once the
+ * exact set holds {@code recent-capacity} tokens. Only the tokens the filter matches, revoked or false positives,
+ * are looked up in the table. Checks are counted by the {@code token.revocation.checks} metric, whose
+ * {@code false_positive} and {@code not_revoked} results give the observed false positive rate.
+ */
+@Component
+public class TokenRevocationList {
+
+    public static final String METRIC_PREFIX = "token.revocation";
+
+    private final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final ApplicationProperties.Security.TokenRevocation properties;
+
+    private final Executor executor;
+
+    /**
+     * Tokens revoked by this instance since the last rebuild, with the {@link System#nanoTime()} of their revocation.
+     */
+    private final ConcurrentMap<String, Long> recentRevocations = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    private volatile BloomFilter filter;
+
+    private final Counter notRevoked;
+
+    private final Counter falsePositives;
+
+    private final Counter revoked;
+
+    public TokenRevocationList(RevokedTokenRepository revokedTokenRepository, ApplicationProperties applicationProperties,
+                               MeterRegistry meterRegistry, @Qualifier("taskExecutor") Executor executor) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.properties = applicationProperties.getSecurity().getTokenRevocation();
+        this.executor = executor;
+        this.filter = BloomFilter.of(Collections.emptyList(), properties.getFalsePositiveProbability());
+        this.notRevoked = checks("not_revoked", meterRegistry);
+        this.falsePositives = checks("false_positive", meterRegistry);
+        this.revoked = checks("revoked", meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".filter.size", this, list -> list.filter.size())
+            .description("Number of revoked tokens in the Bloom filter")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".filter.false.positive.probability", this,
+            list -> list.filter.expectedFalsePositiveProbability())
+            .description("False positive probability of the Bloom filter, estimated from its bits")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".recent", recentRevocations, ConcurrentMap::size)
+            .description("Number of tokens revoked since the Bloom filter was built")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @param tokenId the jti of a verified token; tokens without one cannot be revoked.
+     * @return whether the token is revoked.
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        if (recentRevocations.containsKey(tokenId)) {
+            revoked.increment();
+            return true;
+        }
+        if (!filter.mightContain(tokenId)) {
+            notRevoked.increment();
+            return false;
+        }
+        if (revokedTokenRepository.existsById(tokenId)) {
+            revoked.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Revoke a token until it expires; the revocation is seen by this instance once the transaction commits, and
+     * by the others at their next rebuild.
+     *
+     * @param tokenId the jti of the token.
+     * @param expiresAt the expiration of the token.
+     */
+    @Transactional
+    public void revoke(String tokenId, Instant expiresAt) {
+        revokedTokenRepository.save(new RevokedToken().jti(tokenId).expiresAt(expiresAt));
+        afterCommit(() -> {
+            recentRevocations.put(tokenId, System.nanoTime());
+            if (recentRevocations.size() >= properties.getRecentCapacity() && rebuildRequested.compareAndSet(false, true)) {
+                executor.execute(this::rebuild);
+            }
+        });
+    }
+
+    /**
+     * Rebuild the Bloom filter from the table, when the application is ready and then periodically.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${application.security.token-revocation.rebuild-interval-millis}",
+        initialDelayString = "${application.security.token-revocation.rebuild-interval-millis}")
+    public synchronized void rebuild() {
+        rebuildRequested.set(false);
+        long start = System.nanoTime();
+        List<String> tokenIds = revokedTokenRepository.findAllJtiByExpiresAtAfter(Instant.now());
+        filter = BloomFilter.of(tokenIds, properties.getFalsePositiveProbability());
+        // Revocations committed before the query are in the new filter; later ones stay in the exact set
+        recentRevocations.values().removeIf(revokedAt -> revokedAt - start < 0);
+        log.debug("Rebuilt the revoked token filter with {} tokens", tokenIds.size());
+    }
+
+    /**
+     * Delete the revocations of expired tokens; runs every night by default.
+     */
+    @Scheduled(cron = "${application.security.token-revocation.purge-cron}")
+    @Transactional
+    public void purgeExpiredRevocations() {
+        int purged = revokedTokenRepository.deleteByExpiresAtBefore(Instant.now());
+        log.debug("Purged {} expired token revocations", purged);
+    }
+
+    private static Counter checks(String result, MeterRegistry meterRegistry) {
+        return Counter.builder(METRIC_PREFIX + ".checks")
+            .description("Number of tokens checked for revocation")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+}
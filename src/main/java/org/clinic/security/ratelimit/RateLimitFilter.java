@@ -0,0 +1,168 @@
+package org.clinic.security.ratelimit;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.security.jwt.JWTFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Rate limits requests by client IP address and, when there is one, by bearer token.
+ * <p>
+ * A request uses the first configured rule matching its path, each rule having its own buckets. The filter runs
+ * before the {@link JWTFilter}, so a flood of requests is turned away before any token is verified; for the same
+ * reason, the bearer token is not verified, and a client sending made-up tokens is still held by its address. Tokens
+ * are keyed by their SHA-256 digest, so a bucket key has the same size whatever the length of the token, and no
+ * usable token is kept in the buckets.
+ * Every limited response carries the {@code RateLimit-Limit}, {@code RateLimit-Remaining} and {@code RateLimit-Reset}
+ * headers of the bucket closest to empty; a rejected request is answered by the {@link HandlerExceptionResolver},
+ * as a 429 Too Many Requests problem.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String METRIC_PREFIX = "rate.limit";
+
+    public static final String LIMIT_HEADER = "RateLimit-Limit";
+
+    public static final String REMAINING_HEADER = "RateLimit-Remaining";
+
+    public static final String RESET_HEADER = "RateLimit-Reset";
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    private final TokenBucketRateLimiter rateLimiter;
+
+    private final HandlerExceptionResolver exceptionResolver;
+
+    public RateLimitFilter(ApplicationProperties.Security.RateLimit properties, HandlerExceptionResolver exceptionResolver,
+                           MeterRegistry meterRegistry) {
+        this(properties, new TokenBucketRateLimiter(properties.getMaximumClients(),
+            Duration.ofSeconds(properties.getIdleTimeoutSeconds())), exceptionResolver, meterRegistry);
+    }
+
+    RateLimitFilter(ApplicationProperties.Security.RateLimit properties, TokenBucketRateLimiter rateLimiter,
+                    HandlerExceptionResolver exceptionResolver, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.exceptionResolver = exceptionResolver;
+        List<ApplicationProperties.Security.RateLimit.Rule> configuredRules = properties.getRules();
+        for (int i = 0; i < configuredRules.size(); i++) {
+            rules.add(new Rule(i, configuredRules.get(i), meterRegistry));
+        }
+        Gauge.builder(METRIC_PREFIX + ".buckets", rateLimiter, TokenBucketRateLimiter::size)
+            .description("Approximate number of rate limit buckets kept")
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Rule rule = findRule(request);
+        if (rule == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        RateLimitProbe probe = rateLimiter.tryConsume(rule.ipKeyPrefix + request.getRemoteAddr(), rule.limit);
+        Counter rejections = rule.ipRejections;
+        String token = resolveToken(request);
+        if (probe.isConsumed() && token != null) {
+            RateLimitProbe tokenProbe = rateLimiter.tryConsume(rule.tokenKeyPrefix + digest(token), rule.limit);
+            if (!tokenProbe.isConsumed() || tokenProbe.getRemaining() < probe.getRemaining()) {
+                probe = tokenProbe;
+                rejections = rule.tokenRejections;
+            }
+        }
+        response.setHeader(LIMIT_HEADER, String.valueOf(probe.getLimit()));
+        response.setHeader(REMAINING_HEADER, String.valueOf(probe.getRemaining()));
+        response.setHeader(RESET_HEADER, String.valueOf(probe.getResetSeconds()));
+        if (!probe.isConsumed()) {
+            rejections.increment();
+            exceptionResolver.resolveException(request, response, null,
+                new RateLimitExceededException("Rate limit of " + rule.path + " exceeded", probe.getRetryAfterSeconds()));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Rule findRule(HttpServletRequest request) {
+        for (Rule rule : rules) {
+            if (rule.matcher.matches(request)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static String resolveToken(HttpServletRequest request) {
+        String bearerToken = request.getHeader(JWTFilter.AUTHORIZATION_HEADER);
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return null;
+    }
+
+    /**
+     * @return the Base64-encoded SHA-256 digest of the token.
+     */
+    static String digest(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Rule {
+
+        private final String path;
+
+        private final RequestMatcher matcher;
+
+        private final TokenBucketRateLimiter.Limit limit;
+
+        private final String ipKeyPrefix;
+
+        private final String tokenKeyPrefix;
+
+        private final Counter ipRejections;
+
+        private final Counter tokenRejections;
+
+        Rule(int index, ApplicationProperties.Security.RateLimit.Rule properties, MeterRegistry meterRegistry) {
+            this.path = properties.getPath();
+            this.matcher = new AntPathRequestMatcher(path);
+            this.limit = TokenBucketRateLimiter.Limit.of(properties.getCapacity(), properties.getRefillPerSecond());
+            this.ipKeyPrefix = index + " ip ";
+            this.tokenKeyPrefix = index + " token ";
+            this.ipRejections = rejections(path, "ip", meterRegistry);
+            this.tokenRejections = rejections(path, "token", meterRegistry);
+        }
+
+        private static Counter rejections(String path, String key, MeterRegistry meterRegistry) {
+            return Counter.builder(METRIC_PREFIX + ".rejected")
+                .description("Number of requests rejected by a rate limit")
+                .tag("path", path)
+                .tag("key", key)
+                .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.clinic.security.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of taking a token from a {@link TokenBucket}, with what the {@code RateLimit-*} headers report.
+ */
+public final class RateLimitProbe {
+
+    private final boolean consumed;
+
+    private final long limit;
+
+    private final long remaining;
+
+    private final long nanosToReset;
+
+    private final long nanosToRetry;
+
+    private RateLimitProbe(boolean consumed, long limit, long remaining, long nanosToReset, long nanosToRetry) {
+        this.consumed = consumed;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.nanosToReset = nanosToReset;
+        this.nanosToRetry = nanosToRetry;
+    }
+
+    static RateLimitProbe consumed(long limit, long remaining, long nanosToReset) {
+        return new RateLimitProbe(true, limit, remaining, nanosToReset, 0);
+    }
+
+    static RateLimitProbe rejected(long limit, long nanosToReset, long nanosToRetry) {
+        return new RateLimitProbe(false, limit, 0, nanosToReset, nanosToRetry);
+    }
+
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    /**
+     * @return the capacity of the bucket.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of tokens left in the bucket.
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * @return the number of seconds, rounded up, until the bucket is full again.
+     */
+    public long getResetSeconds() {
+        return toSecondsRoundedUp(nanosToReset);
+    }
+
+    /**
+     * @return the number of seconds, rounded up, until a rejected request can be retried; 0 if it was not rejected.
+     */
+    public long getRetryAfterSeconds() {
+        return toSecondsRoundedUp(nanosToRetry);
+    }
+
+    private static long toSecondsRoundedUp(long nanos) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return (nanos + second - 1) / second;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitProbe{" +
+            "consumed=" + consumed +
+            ", limit=" + limit +
+            ", remaining=" + remaining +
+            ", nanosToReset=" + nanosToReset +
+            ", nanosToRetry=" + nanosToRetry +
+            "}";
+    }
+}
@@ -0,0 +1,51 @@
+package org.clinic.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket whose whole state is a single {@link AtomicLong}, updated by compare-and-set.
+ * <p>
+ * Rather than a token count and a refill time, the bucket stores the instant at which it will be full again: at
+ * {@code now}, it holds {@code (capacity * nanosPerToken - (fullAt - now)) / nanosPerToken} tokens, and taking one
+ * moves {@code fullAt} forward by {@code nanosPerToken}. Refilling is implicit, so there is nothing to schedule and
+ * nothing to lock.
+ */
+final class TokenBucket {
+
+    private final long capacity;
+
+    private final long nanosPerToken;
+
+    private final long burstNanos;
+
+    private final AtomicLong fullAt;
+
+    TokenBucket(long capacity, long nanosPerToken, long now) {
+        this.capacity = capacity;
+        this.nanosPerToken = nanosPerToken;
+        this.burstNanos = Math.multiplyExact(capacity, nanosPerToken);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Take a token from the bucket, if there is one.
+     *
+     * @param now the current {@link System#nanoTime()}.
+     * @return the outcome, with the state of the bucket afterwards.
+     */
+    RateLimitProbe tryConsume(long now) {
+        while (true) {
+            long current = fullAt.get();
+            // A bucket full since before now is simply full: its tokens do not accumulate past the capacity
+            long start = current - now > 0 ? current : now;
+            long next = start + nanosPerToken;
+            long nanosToFull = next - now;
+            if (nanosToFull > burstNanos) {
+                return RateLimitProbe.rejected(capacity, start - now, nanosToFull - burstNanos);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return RateLimitProbe.consumed(capacity, (burstNanos - nanosToFull) / nanosPerToken, nanosToFull);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.clinic.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link TokenBucket}s by client key, in a bounded map that drops the buckets left idle.
+ * <p>
+ * Neither taking a token nor finding the bucket of a known key takes a lock, so concurrent requests of the same
+ * client only ever retry a compare-and-set. A dropped bucket is created again full, which is what it would have been
+ * had it been kept: the idle timeout should be longer than the time an empty bucket takes to refill.
+ */
+public class TokenBucketRateLimiter {
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final LongSupplier nanoClock;
+
+    public TokenBucketRateLimiter(long maximumBuckets, Duration idleTimeout) {
+        this(maximumBuckets, idleTimeout, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(long maximumBuckets, Duration idleTimeout, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maximumBuckets)
+            .expireAfterAccess(idleTimeout)
+            .ticker(nanoClock::getAsLong)
+            .build();
+    }
+
+    /**
+     * Take a token from the bucket of a client, creating a full one if it has none.
+     *
+     * @param key the key of the client, unique across limits.
+     * @param limit the limit applied to the client.
+     * @return the outcome.
+     */
+    public RateLimitProbe tryConsume(String key, Limit limit) {
+        long now = nanoClock.getAsLong();
+        TokenBucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            bucket = buckets.get(key, k -> new TokenBucket(limit.capacity, limit.nanosPerToken, now));
+        }
+        return bucket.tryConsume(now);
+    }
+
+    /**
+     * @return the approximate number of buckets kept.
+     */
+    public long size() {
+        return buckets.estimatedSize();
+    }
+
+    /**
+     * The capacity of a bucket, and the rate at which it refills.
+     */
+    public static final class Limit {
+
+        private final long capacity;
+
+        private final long nanosPerToken;
+
+        private Limit(long capacity, long nanosPerToken) {
+            this.capacity = capacity;
+            this.nanosPerToken = nanosPerToken;
+        }
+
+        /**
+         * @param capacity the number of tokens of a full bucket, that is the largest burst allowed.
+         * @param refillPerSecond the number of tokens added per second, that is the sustained rate allowed.
+         * @return the limit.
+         */
+        public static Limit of(long capacity, double refillPerSecond) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("The capacity of a bucket must be positive: " + capacity);
+            }
+            if (!(refillPerSecond > 0)) {
+                throw new IllegalArgumentException("The refill rate of a bucket must be positive: " + refillPerSecond);
+            }
+            long nanosPerToken = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+            if (capacity > Long.MAX_VALUE / nanosPerToken) {
+                throw new IllegalArgumentException("A bucket of " + capacity + " tokens would take too long to refill");
+            }
+            return new Limit(capacity, nanosPerToken);
+        }
+
+        public long getCapacity() {
+            return capacity;
+        }
+
+        @Override
+        public String toString() {
+            return "Limit{" +
+                "capacity=" + capacity +
+                ", nanosPerToken=" + nanosPerToken +
+                "}";
+        }
+    }
+}
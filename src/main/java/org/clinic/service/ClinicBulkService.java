@@ -0,0 +1,87 @@
+package org.clinic.service;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.service.dto.BulkItemResultDTO;
+import org.clinic.service.dto.BulkResultDTO;
+import org.clinic.service.dto.ClinicDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Service for creating and updating {@link org.clinic.domain.Clinic}s in bulk.
+ * <p>
+ * The input is consumed lazily and saved in chunks of {@code application.clinic.bulk.chunk-size} clinics, each in its
+ * own transaction through {@link ClinicService#saveAll(List)}: memory usage depends on the chunk size, not on the size
+ * of the input, and a failing chunk does not roll back the chunks already saved.
+ */
+@Service
+public class ClinicBulkService {
+
+    private final Logger log = LoggerFactory.getLogger(ClinicBulkService.class);
+
+    private final ClinicService clinicService;
+
+    private final int chunkSize;
+
+    public ClinicBulkService(ClinicService clinicService, ApplicationProperties applicationProperties) {
+        this.clinicService = clinicService;
+        this.chunkSize = applicationProperties.getClinic().getBulk().getChunkSize();
+    }
+
+    /**
+     * Save all the clinics of the input.
+     *
+     * @param clinicDTOs the clinics to save; the iterator may throw a {@link RuntimeException} on malformed input,
+     *                   in which case the clinics read so far are saved and the error is reported in the result. The
+     *                   errors reported only give the index of the items, the exceptions are logged.
+     * @return the outcome of each clinic, in input order, and the throughput.
+     */
+    public BulkResultDTO saveAll(Iterator<ClinicDTO> clinicDTOs) {
+        long start = System.nanoTime();
+        BulkResultDTO result = new BulkResultDTO();
+        List<ClinicDTO> chunk = new ArrayList<>(chunkSize);
+        try {
+            while (clinicDTOs.hasNext()) {
+                chunk.add(clinicDTOs.next());
+                if (chunk.size() == chunkSize) {
+                    saveChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            int read = result.getItems().size() + chunk.size();
+            log.warn("Bulk save of Clinics stopped after {} items: {}", read, e.getMessage());
+            result.setError("Malformed input after item " + read);
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, result);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        result.setElapsedMillis(elapsedNanos / 1_000_000);
+        result.setRowsPerSecond(elapsedNanos == 0 ? 0 : result.getItems().size() * 1e9 / elapsedNanos);
+        log.info("Bulk saved Clinics: {}", result);
+        return result;
+    }
+
+    private void saveChunk(List<ClinicDTO> chunk, BulkResultDTO result) {
+        List<BulkItemResultDTO> chunkResults;
+        try {
+            chunkResults = clinicService.saveAll(chunk);
+        } catch (RuntimeException e) {
+            int first = result.getItems().size();
+            int last = first + chunk.size() - 1;
+            log.warn("Bulk save of Clinics {} to {} failed: {}", first, last, e.getMessage(), e);
+            chunkResults = new ArrayList<>(chunk.size());
+            for (ClinicDTO clinicDTO : chunk) {
+                chunkResults.add(BulkItemResultDTO.failed(clinicDTO.getId(), "Items " + first + " to " + last + " rolled back"));
+            }
+        }
+        chunkResults.forEach(result::add);
+    }
+}
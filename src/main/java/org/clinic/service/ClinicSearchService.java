@@ -0,0 +1,113 @@
+package org.clinic.service;
+
+import org.clinic.domain.Clinic;
+import org.clinic.repository.ClinicRepository;
+import org.clinic.service.dto.ClinicDTO;
+import org.clinic.service.util.NameIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service for searching {@link Clinic}s by name.
+ * <p>
+ * Searches are answered from an in-memory {@link NameIndex}, built from the database when the application is ready
+ * and kept current by {@link ClinicService}. Changes are applied to the index once their transaction commits, so a
+ * rolled back save or delete leaves it untouched.
+ */
+@Service
+public class ClinicSearchService {
+
+    private final Logger log = LoggerFactory.getLogger(ClinicSearchService.class);
+
+    private final ClinicRepository clinicRepository;
+
+    private final EntityManager entityManager;
+
+    private final NameIndex index = new NameIndex();
+
+    public ClinicSearchService(ClinicRepository clinicRepository, EntityManager entityManager) {
+        this.clinicRepository = clinicRepository;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Build the index from all the clinics in the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildIndex() {
+        long start = System.currentTimeMillis();
+        index.clear();
+        try (Stream<Clinic> clinics = clinicRepository.streamAllByOrderByIdAsc()) {
+            clinics.forEach(clinic -> {
+                index.put(clinic.getId(), clinic.getName());
+                entityManager.detach(clinic);
+            });
+        }
+        log.info("Indexed {} clinic names in {} ms", index.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Search the clinics by name prefix or substring, ignoring case and diacritics.
+     *
+     * @param query the text to look for.
+     * @param limit the maximum number of clinics to return.
+     * @return the best matching clinics, best first.
+     */
+    public List<ClinicDTO> search(String query, int limit) {
+        log.debug("Request to search Clinics : {}", query);
+        List<NameIndex.Entry> entries = index.search(query, limit);
+        List<ClinicDTO> result = new ArrayList<>(entries.size());
+        for (NameIndex.Entry entry : entries) {
+            ClinicDTO clinicDTO = new ClinicDTO();
+            clinicDTO.setId(entry.getId());
+            clinicDTO.setName(entry.getName());
+            result.add(clinicDTO);
+        }
+        return result;
+    }
+
+    /**
+     * Index the name of a saved clinic, once the current transaction commits.
+     *
+     * @param id the id of the clinic.
+     * @param name the name of the clinic.
+     */
+    public void index(Long id, String name) {
+        afterCommit(() -> index.put(id, name));
+    }
+
+    /**
+     * Remove deleted clinics from the index, once the current transaction commits.
+     *
+     * @param ids the ids of the clinics.
+     */
+    public void remove(Iterable<Long> ids) {
+        afterCommit(() -> ids.forEach(index::remove));
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+}
@@ -1,19 +1,35 @@
 package org.clinic.service;
 
+import org.clinic.config.ApplicationProperties;
 import org.clinic.domain.Clinic;
 import org.clinic.repository.ClinicRepository;
+import org.clinic.service.dto.BulkItemResultDTO;
+import org.clinic.service.dto.ClinicBatchDTO;
 import org.clinic.service.dto.ClinicDTO;
 import org.clinic.service.mapper.ClinicMapper;
+import org.clinic.service.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.LinkedList;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service Implementation for managing {@link Clinic}.
@@ -28,9 +44,26 @@ public class ClinicService {
 
     private final ClinicMapper clinicMapper;
 
-    public ClinicService(ClinicRepository clinicRepository, ClinicMapper clinicMapper) {
+    private final EntityManager entityManager;
+
+    private final SingleFlight<Long, ClinicDTO> clinicLoads;
+
+    private final int multiGetChunkSize;
+
+    private final Cache clinicsByIdCache;
+
+    private final ClinicSearchService clinicSearchService;
+
+    public ClinicService(ClinicRepository clinicRepository, ClinicMapper clinicMapper, EntityManager entityManager,
+                         ApplicationProperties applicationProperties, MeterRegistry meterRegistry, CacheManager cacheManager,
+                         ClinicSearchService clinicSearchService) {
         this.clinicRepository = clinicRepository;
+        this.clinicSearchService = clinicSearchService;
         this.clinicMapper = clinicMapper;
+        this.entityManager = entityManager;
+        this.clinicsByIdCache = cacheManager.getCache(ClinicRepository.CLINICS_BY_ID_CACHE);
+        this.clinicLoads = new SingleFlight<>("clinic", applicationProperties.getSingleFlight().getTimeoutMillis(), meterRegistry);
+        this.multiGetChunkSize = applicationProperties.getClinic().getMultiGet().getChunkSize();
     }
 
     /**
@@ -39,38 +72,156 @@ public class ClinicService {
      * @param clinicDTO the entity to save.
      * @return the persisted entity.
      */
+    @CacheEvict(cacheNames = ClinicRepository.CLINICS_BY_ID_CACHE, key = "#result.id")
     public ClinicDTO save(ClinicDTO clinicDTO) {
         log.debug("Request to save Clinic : {}", clinicDTO);
         Clinic clinic = clinicMapper.toEntity(clinicDTO);
         clinic = clinicRepository.save(clinic);
+        clinicSearchService.index(clinic.getId(), clinic.getName());
         return clinicMapper.toDto(clinic);
     }
 
     /**
-     * Get all the clinics.
+     * Save a chunk of clinics in one transaction.
+     * <p>
+     * Nothing is flushed per entity: new clinics are persisted and existing ones are loaded with a single
+     * {@code IN} query and updated in place, so all the statements are sent as JDBC batches when the transaction
+     * commits. A clinic to update that does not exist is reported as failed, without failing the chunk.
+     *
+     * @param clinicDTOs the entities to save.
+     * @return the outcome of each entity, in the order of {@code clinicDTOs}.
+     */
+    public List<BulkItemResultDTO> saveAll(List<ClinicDTO> clinicDTOs) {
+        log.debug("Request to save {} Clinics", clinicDTOs.size());
+        List<Long> ids = new ArrayList<>();
+        for (ClinicDTO clinicDTO : clinicDTOs) {
+            if (clinicDTO.getId() != null) {
+                ids.add(clinicDTO.getId());
+            }
+        }
+        Map<Long, Clinic> existing = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Clinic clinic : clinicRepository.findAllById(ids)) {
+                existing.put(clinic.getId(), clinic);
+            }
+        }
+        List<BulkItemResultDTO> results = new ArrayList<>(clinicDTOs.size());
+        for (ClinicDTO clinicDTO : clinicDTOs) {
+            if (clinicDTO.getId() == null) {
+                Clinic clinic = clinicRepository.save(clinicMapper.toEntity(clinicDTO));
+                clinicSearchService.index(clinic.getId(), clinic.getName());
+                results.add(BulkItemResultDTO.created(clinic.getId()));
+                continue;
+            }
+            Clinic clinic = existing.get(clinicDTO.getId());
+            if (clinic == null) {
+                results.add(BulkItemResultDTO.failed(clinicDTO.getId(), "Clinic not found"));
+                continue;
+            }
+            clinicMapper.updateEntity(clinicDTO, clinic);
+            clinicsByIdCache.evict(clinic.getId());
+            clinicSearchService.index(clinic.getId(), clinic.getName());
+            results.add(BulkItemResultDTO.updated(clinic.getId()));
+        }
+        return results;
+    }
+
+    /**
+     * Get one page of clinics, ordered by id, starting after the given id.
      *
+     * @param afterId the id of the last clinic of the previous page, or {@code null} for the first page.
+     * @param size the maximum number of clinics to return.
      * @return the list of entities.
      */
     @Transactional(readOnly = true)
-    public List<ClinicDTO> findAll() {
-        log.debug("Request to get all Clinics");
-        return clinicRepository.findAll().stream()
-            .map(clinicMapper::toDto)
-            .collect(Collectors.toCollection(LinkedList::new));
+    public List<ClinicDTO> findPage(Long afterId, int size) {
+        log.debug("Request to get a page of Clinics after : {}", afterId);
+        PageRequest limit = PageRequest.of(0, size);
+        List<Clinic> clinics = afterId == null
+            ? clinicRepository.findAllByOrderByIdAsc(limit)
+            : clinicRepository.findAllByIdGreaterThanOrderByIdAsc(afterId, limit);
+        return clinicMapper.toDto(clinics);
     }
 
+    /**
+     * Get the clinics with the given ids.
+     * <p>
+     * Ids are looked up with one {@code IN} query per chunk of {@code application.clinic.multi-get.chunk-size} ids.
+     *
+     * @param ids the ids of the entities, duplicates are ignored.
+     * @return the clinics found, in the order of {@code ids}, and the ids that were not found.
+     */
+    @Transactional(readOnly = true)
+    public ClinicBatchDTO findAllById(List<Long> ids) {
+        log.debug("Request to get {} Clinics by id", ids.size());
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, ClinicDTO> found = new HashMap<>();
+        for (int from = 0; from < distinctIds.size(); from += multiGetChunkSize) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + multiGetChunkSize, distinctIds.size()));
+            for (Clinic clinic : clinicRepository.findAllById(chunk)) {
+                found.put(clinic.getId(), clinicMapper.toDto(clinic));
+            }
+        }
+        ClinicBatchDTO result = new ClinicBatchDTO();
+        for (Long id : distinctIds) {
+            ClinicDTO clinicDTO = found.get(id);
+            if (clinicDTO != null) {
+                result.getClinics().add(clinicDTO);
+            } else {
+                result.getMissingIds().add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stream all the clinics, ordered by id, to the given consumer.
+     * <p>
+     * Entities are detached as soon as they are mapped, so the persistence context stays empty and memory usage
+     * does not grow with the number of rows.
+     *
+     * @param consumer the consumer of the exported clinics.
+     */
+    @Transactional(readOnly = true)
+    public void exportAll(Consumer<ClinicDTO> consumer) {
+        log.debug("Request to export all Clinics");
+        try (Stream<Clinic> clinics = clinicRepository.streamAllByOrderByIdAsc()) {
+            clinics.forEach(clinic -> {
+                ClinicDTO clinicDTO = clinicMapper.toDto(clinic);
+                entityManager.detach(clinic);
+                consumer.accept(clinicDTO);
+            });
+        }
+    }
 
     /**
      * Get one clinic by id.
+     * <p>
+     * Clinics are read through the {@code clinicsById} cache. On a miss, concurrent requests for the same id share a
+     * single database load, whether the cache is enabled or not, and get its outcome or its exception. The load runs
+     * in the repository's own transaction, so callers waiting on it do not hold a connection, and a cache hit does not
+     * open one. A cached clinic is copied before being returned, so a caller changing it does not change it for the
+     * others.
      *
      * @param id the id of the entity.
      * @return the entity.
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<ClinicDTO> findOne(Long id) {
         log.debug("Request to get Clinic : {}", id);
-        return clinicRepository.findById(id)
-            .map(clinicMapper::toDto);
+        Cache.ValueWrapper cached = clinicsByIdCache.get(id);
+        ClinicDTO clinicDTO = cached != null ? (ClinicDTO) cached.get() : clinicLoads.load(id, () -> load(id));
+        return Optional.ofNullable(clinicDTO).map(ClinicService::copy);
+    }
+
+    private ClinicDTO load(Long id) {
+        try {
+            return clinicsByIdCache.get(id, () -> clinicRepository.findById(id)
+                .map(clinicMapper::toDto)
+                .orElse(null));
+        } catch (Cache.ValueRetrievalException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
     }
 
     /**
@@ -78,8 +229,39 @@ public class ClinicService {
      *
      * @param id the id of the entity.
      */
+    @CacheEvict(cacheNames = ClinicRepository.CLINICS_BY_ID_CACHE)
     public void delete(Long id) {
         log.debug("Request to delete Clinic : {}", id);
         clinicRepository.deleteById(id);
+        clinicSearchService.remove(Collections.singletonList(id));
+    }
+
+    /**
+     * Delete the clinics with the given ids.
+     * <p>
+     * Clinics are deleted with one {@code delete ... where id in} statement per chunk of
+     * {@code application.clinic.multi-get.chunk-size} ids, without being loaded first.
+     *
+     * @param ids the ids of the entities.
+     * @return the number of deleted entities.
+     */
+    public int deleteAll(List<Long> ids) {
+        log.debug("Request to delete {} Clinics", ids.size());
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int deleted = 0;
+        for (int from = 0; from < distinctIds.size(); from += multiGetChunkSize) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + multiGetChunkSize, distinctIds.size()));
+            deleted += clinicRepository.deleteByIdIn(chunk);
+            chunk.forEach(clinicsByIdCache::evict);
+            clinicSearchService.remove(chunk);
+        }
+        return deleted;
+    }
+
+    private static ClinicDTO copy(ClinicDTO clinicDTO) {
+        ClinicDTO copy = new ClinicDTO();
+        copy.setId(clinicDTO.getId());
+        copy.setName(clinicDTO.getName());
+        return copy;
     }
 }
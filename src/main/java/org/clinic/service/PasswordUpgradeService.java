@@ -0,0 +1,88 @@
+package org.clinic.service;
+
+import org.clinic.domain.User;
+import org.clinic.repository.UserRepository;
+import org.clinic.security.DomainUserDetailsService;
+import org.clinic.security.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Service upgrading stored password hashes to the current encoding, after a successful login.
+ * <p>
+ * Upgrades run asynchronously, so the login that triggers one does not wait for the new hash. Their outcome is
+ * counted by the {@code password.rehash} metric.
+ */
+@Service
+public class PasswordUpgradeService {
+
+    public static final String METRIC_NAME = "password.rehash";
+
+    private final Logger log = LoggerFactory.getLogger(PasswordUpgradeService.class);
+
+    private final UserRepository userRepository;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final DomainUserDetailsService userDetailsService;
+
+    private final Counter upgraded;
+
+    private final Counter skipped;
+
+    private final Counter rejected;
+
+    public PasswordUpgradeService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                                  DomainUserDetailsService userDetailsService, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
+        this.upgraded = counter("upgraded", meterRegistry);
+        this.skipped = counter("skipped", meterRegistry);
+        this.rejected = counter("rejected", meterRegistry);
+    }
+
+    /**
+     * Re-hash the password of a user with the current encoding, unless it has already been upgraded.
+     *
+     * @param accountId the id of the user.
+     * @param rawPassword the password the user has just been authenticated with.
+     */
+    @Async
+    @Transactional
+    public void upgradePassword(Long accountId, String rawPassword) {
+        Optional<User> user = userRepository.findById(accountId)
+            .filter(existingUser -> passwordEncoder.upgradeEncoding(existingUser.getPassword()));
+        if (!user.isPresent()) {
+            skipped.increment();
+            return;
+        }
+        try {
+            user.get().setPassword(passwordEncoder.encode(rawPassword));
+        } catch (PasswordHashingRejectedException e) {
+            // The next login will try again
+            log.debug("Password upgrade of user {} postponed: {}", accountId, e.getMessage());
+            rejected.increment();
+            return;
+        }
+        userDetailsService.evictFromCache(user.get().getUsername());
+        log.debug("Upgraded the password hash of user {}", accountId);
+        upgraded.increment();
+    }
+
+    private static Counter counter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder(METRIC_NAME)
+            .description("Number of password hashes upgraded on login")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
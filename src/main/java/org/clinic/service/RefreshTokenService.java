@@ -0,0 +1,165 @@
+package org.clinic.service;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.domain.RefreshToken;
+import org.clinic.repository.RefreshTokenRepository;
+import org.clinic.repository.UserRepository;
+import org.clinic.security.AccountUserDetails;
+import org.clinic.security.DomainUserDetailsService;
+import org.clinic.security.jwt.TokenProvider;
+import org.clinic.service.dto.TokenDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Service Implementation for managing {@link RefreshToken}.
+ * <p>
+ * A refresh token is 256 random bits, so a single SHA-256 is enough to store it: renewing an access token costs one
+ * indexed lookup and no password hashing. Each refresh uses up the token presented and issues the next one of its
+ * family. A used token presented again means it was stolen, or the client replayed it: the whole family is revoked,
+ * and the client has to log in again. Reuses are counted by the {@code refresh.token.reused} metric.
+ */
+@Service
+@Transactional
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    private final UserRepository userRepository;
+
+    private final DomainUserDetailsService userDetailsService;
+
+    private final TokenProvider tokenProvider;
+
+    private final long validitySeconds;
+
+    private final Counter reused;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+                               DomainUserDetailsService userDetailsService, TokenProvider tokenProvider,
+                               ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.tokenProvider = tokenProvider;
+        this.validitySeconds = applicationProperties.getSecurity().getRefreshToken().getValiditySeconds();
+        this.reused = Counter.builder("refresh.token.reused")
+            .description("Number of used refresh tokens presented again, each revoking its family")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Issue a refresh token starting a new family, after a login.
+     *
+     * @param userId the id of the authenticated user.
+     * @return the refresh token, to be given to the client only.
+     */
+    public String create(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Use up a refresh token, and issue a new access token and the next refresh token of its family.
+     *
+     * @param refreshToken the refresh token presented by the client.
+     * @return the new tokens.
+     * @throws BadCredentialsException if the refresh token is unknown, expired or already used.
+     */
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public TokenDTO refresh(String refreshToken) {
+        if (!StringUtils.hasText(refreshToken)) {
+            throw new BadCredentialsException("Missing refresh token");
+        }
+        RefreshToken stored = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+            .orElseThrow(() -> new BadCredentialsException("Unknown refresh token"));
+        if (stored.getExpiresAt().isBefore(Instant.now())) {
+            throw new BadCredentialsException("Expired refresh token");
+        }
+        if (stored.isUsed() || refreshTokenRepository.markUsed(stored.getId()) == 0) {
+            log.warn("Refresh token {} of user {} used twice, revoking its family", stored.getId(), stored.getUser().getId());
+            reused.increment();
+            refreshTokenRepository.deleteByFamilyId(stored.getFamilyId());
+            throw new BadCredentialsException("Refresh token already used");
+        }
+        AccountUserDetails user = userDetailsService.createUserDetails(stored.getUser());
+        String accessToken = tokenProvider.createToken(
+            new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()), false);
+        return new TokenDTO(accessToken, issue(user.getAccountId(), stored.getFamilyId()));
+    }
+
+    /**
+     * Revoke a refresh token and the rest of its family, at logout.
+     *
+     * @param refreshToken the refresh token presented by the client.
+     */
+    public void revoke(String refreshToken) {
+        refreshTokenRepository.findByTokenHash(hash(refreshToken))
+            .ifPresent(stored -> refreshTokenRepository.deleteByFamilyId(stored.getFamilyId()));
+    }
+
+    /**
+     * Revoke every refresh token of a user, before the user is deleted.
+     *
+     * @param userId the id of the user.
+     */
+    public void deleteByUserId(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * Delete the expired refresh tokens, used or not; runs every night by default.
+     */
+    @Scheduled(cron = "${application.security.refresh-token.purge-cron}")
+    public void purgeExpiredTokens() {
+        int purged = refreshTokenRepository.deleteByExpiresAtBefore(Instant.now());
+        log.debug("Purged {} expired refresh tokens", purged);
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(new RefreshToken()
+            .tokenHash(hash(token))
+            .user(userRepository.getOne(userId))
+            .familyId(familyId)
+            .expiresAt(Instant.now().plusSeconds(validitySeconds)));
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
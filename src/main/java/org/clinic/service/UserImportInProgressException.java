@@ -0,0 +1,13 @@
+package org.clinic.service;
+
+/**
+ * This exception is thrown when a user import is started while another one is running.
+ */
+public class UserImportInProgressException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UserImportInProgressException() {
+        super("A user import is already running");
+    }
+}
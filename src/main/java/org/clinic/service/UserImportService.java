@@ -0,0 +1,285 @@
+package org.clinic.service;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.domain.User;
+import org.clinic.domain.UserImportCheckpoint;
+import org.clinic.repository.UserImportCheckpointRepository;
+import org.clinic.security.BoundedPasswordEncoder;
+import org.clinic.service.dto.BulkItemResultDTO;
+import org.clinic.service.dto.UserImportResultDTO;
+import org.clinic.service.util.DelimitedReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Service for importing {@link User}s in bulk, from the {@code ;}-separated layout of
+ * {@code config/liquibase/fake-data/user.csv}: a header naming the columns, then one user per row.
+ * <p>
+ * The input is read as a stream, in chunks of {@code application.user.bulk-import.chunk-size} rows. The passwords of
+ * a chunk are hashed in parallel, on a pool of {@code parallelism} threads kept for imports; then the chunk is saved
+ * in one transaction through {@link UserService#saveImported}, with a checkpoint of the rows committed so far.
+ * Invalid rows and used usernames are reported as row errors. If a chunk fails, or the application stops, importing
+ * the same input again with the same import id resumes after the last committed chunk.
+ * <p>
+ * Only one import runs at a time, the others are rejected with a {@link UserImportInProgressException}: the hashing
+ * load of imports is bounded by {@code parallelism} threads, however many are requested.
+ * <p>
+ * Progress is logged after each chunk, and imported rows are counted by the {@code user.import.rows} metric.
+ */
+@Service
+public class UserImportService {
+
+    public static final char DELIMITER = ';';
+
+    private final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private final UserService userService;
+
+    private final UserImportCheckpointRepository checkpointRepository;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ApplicationProperties.User.BulkImport properties;
+
+    private final Counter createdRows;
+
+    private final Counter failedRows;
+
+    private final ForkJoinPool pool;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public UserImportService(UserService userService, UserImportCheckpointRepository checkpointRepository,
+                             PasswordEncoder passwordEncoder, ApplicationProperties applicationProperties,
+                             MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.checkpointRepository = checkpointRepository;
+        // The import brings its own pool, so it neither queues behind logins nor is rejected like them
+        this.passwordEncoder = passwordEncoder instanceof BoundedPasswordEncoder
+            ? ((BoundedPasswordEncoder) passwordEncoder).getDelegate() : passwordEncoder;
+        this.properties = applicationProperties.getUser().getBulkImport();
+        this.createdRows = rows("created", meterRegistry);
+        this.failedRows = rows("failed", meterRegistry);
+        this.pool = new ForkJoinPool(properties.getParallelism());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Import the users of a CSV input, or resume a previous import of the same input.
+     *
+     * @param importId the id of the import, chosen by the client; give the same one to resume an import.
+     * @param csv the input, which is closed once read.
+     * @return the counts, the first row errors and the throughput.
+     * @throws UserImportInProgressException if another import is running.
+     */
+    public UserImportResultDTO importUsers(String importId, Reader csv) {
+        if (!running.compareAndSet(false, true)) {
+            throw new UserImportInProgressException();
+        }
+        try {
+            return importUsers(importId, csv, System.nanoTime());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private UserImportResultDTO importUsers(String importId, Reader csv, long start) {
+        UserImportResultDTO result = new UserImportResultDTO(importId);
+        long committed = checkpointRepository.findById(importId).map(UserImportCheckpoint::getRowsCommitted).orElse(0L);
+        result.setSkipped(committed);
+        try (DelimitedReader reader = new DelimitedReader(csv, DELIMITER)) {
+            List<String> header = reader.next();
+            Columns columns = header == null ? null : Columns.of(header);
+            List<Row> chunk = new ArrayList<>(properties.getChunkSize());
+            long rowNumber = 0;
+            boolean imported = true;
+            while (imported && columns != null) {
+                Row row;
+                try {
+                    List<String> fields = reader.next();
+                    if (fields == null) {
+                        break;
+                    }
+                    row = columns.row(++rowNumber, fields);
+                } catch (IllegalArgumentException e) {
+                    row = Row.invalid(++rowNumber, e.getMessage());
+                }
+                if (row.number <= committed) {
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == properties.getChunkSize()) {
+                    imported = importChunk(importId, chunk, result);
+                    chunk.clear();
+                }
+            }
+            if (imported && !chunk.isEmpty()) {
+                importChunk(importId, chunk, result);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("User import {} stopped after {} rows: {}", importId, committed + result.getRead(), e.getMessage());
+            result.setError("Unreadable input after row " + (committed + result.getRead()) + ": " + e.getMessage());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        result.setElapsedMillis(elapsedNanos / 1_000_000);
+        result.setRowsPerSecond(elapsedNanos == 0 ? 0 : result.getRead() * 1e9 / elapsedNanos);
+        log.info("Imported Users: {}", result);
+        return result;
+    }
+
+    /**
+     * @return whether the chunk was committed; if not, the import stops there.
+     */
+    private boolean importChunk(String importId, List<Row> chunk, UserImportResultDTO result) {
+        List<Row> valid = chunk.stream().filter(row -> row.error == null).collect(Collectors.toList());
+        long first = chunk.get(0).number;
+        long last = chunk.get(chunk.size() - 1).number;
+        List<BulkItemResultDTO> saved;
+        try {
+            List<User> users = pool.submit(() -> valid.parallelStream().map(this::toUser).collect(Collectors.toList())).join();
+            saved = userService.saveImported(users, new UserImportCheckpoint()
+                .importId(importId)
+                .rowsCommitted(last)
+                .updatedAt(Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("User import {} stopped, rows {} to {} rolled back: {}", importId, first, last, e.getMessage(), e);
+            result.setError("Rows " + first + " to " + last + " rolled back");
+            return false;
+        }
+        result.setRead(result.getRead() + chunk.size());
+        int created = 0;
+        int next = 0;
+        for (Row row : chunk) {
+            BulkItemResultDTO item = row.error == null ? saved.get(next++) : BulkItemResultDTO.failed(null, row.error);
+            item.setIndex((int) row.number);
+            if (item.getStatus() == BulkItemResultDTO.Status.CREATED) {
+                created++;
+            } else {
+                result.addError(item, properties.getMaxReportedErrors());
+            }
+        }
+        result.setCreated(result.getCreated() + created);
+        createdRows.increment(created);
+        failedRows.increment(chunk.size() - created);
+        log.info("User import {}: {} rows committed, {} created, {} failed", importId, last, result.getCreated(),
+            result.getFailed());
+        return true;
+    }
+
+    private User toUser(Row row) {
+        User user = new User();
+        user.setUsername(UserService.normalizeUsername(row.username));
+        user.setPassword(passwordEncoder.encode(row.password));
+        user.setFirstname(row.firstname);
+        user.setLastname(row.lastname);
+        return user;
+    }
+
+    private static Counter rows(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("user.import.rows")
+            .description("Number of rows of user imports, by outcome")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * The positions of the columns, read from the header; the id of the previous system is not imported.
+     */
+    private static final class Columns {
+
+        private final int count;
+
+        private final int username;
+
+        private final int password;
+
+        private final int firstname;
+
+        private final int lastname;
+
+        private Columns(List<String> header) {
+            List<String> names = header.stream().map(name -> name.trim().toLowerCase(Locale.ENGLISH)).collect(Collectors.toList());
+            this.count = names.size();
+            this.username = names.indexOf("username");
+            this.password = names.indexOf("password");
+            this.firstname = names.indexOf("firstname");
+            this.lastname = names.indexOf("lastname");
+        }
+
+        static Columns of(List<String> header) {
+            Columns columns = new Columns(header);
+            if (columns.username < 0 || columns.password < 0) {
+                throw new IllegalArgumentException("The header must name the username and password columns: " + header);
+            }
+            return columns;
+        }
+
+        Row row(long number, List<String> fields) {
+            if (fields.size() != count) {
+                return Row.invalid(number, "Expected " + count + " fields, found " + fields.size());
+            }
+            String username = fields.get(this.username);
+            String password = fields.get(this.password);
+            if (!StringUtils.hasText(username)) {
+                return Row.invalid(number, "Missing username");
+            }
+            if (!StringUtils.hasText(password)) {
+                return Row.invalid(number, "Missing password");
+            }
+            return new Row(number, username, password, field(fields, firstname), field(fields, lastname), null);
+        }
+
+        private static String field(List<String> fields, int index) {
+            return index < 0 || fields.get(index).isEmpty() ? null : fields.get(index);
+        }
+    }
+
+    private static final class Row {
+
+        private final long number;
+
+        private final String username;
+
+        private final String password;
+
+        private final String firstname;
+
+        private final String lastname;
+
+        private final String error;
+
+        private Row(long number, String username, String password, String firstname, String lastname, String error) {
+            this.number = number;
+            this.username = username;
+            this.password = password;
+            this.firstname = firstname;
+            this.lastname = lastname;
+            this.error = error;
+        }
+
+        static Row invalid(long number, String error) {
+            return new Row(number, null, null, null, null, error);
+        }
+    }
+}
@@ -1,30 +1,43 @@
 package org.clinic.service;
 
+import org.clinic.config.ApplicationProperties;
 import org.clinic.domain.User;
+import org.clinic.domain.UserImportCheckpoint;
+import org.clinic.repository.UserImportCheckpointRepository;
 import org.clinic.repository.UserRepository;
-import org.clinic.security.jwt.JWTFilter;
+import org.clinic.security.AccountUserDetails;
+import org.clinic.security.DomainUserDetailsService;
+import org.clinic.security.jwt.JwtAuthentication;
 import org.clinic.security.jwt.TokenProvider;
+import org.clinic.service.dto.BulkItemResultDTO;
 import org.clinic.service.dto.LoginRequest;
 import org.clinic.service.dto.TokenDTO;
 import org.clinic.service.dto.UserDTO;
+import org.clinic.service.dto.UserSummaryDTO;
 import org.clinic.service.mapper.UserMapper;
+import org.clinic.service.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -36,71 +49,140 @@ import java.util.stream.Collectors;
 @Transactional
 public class UserService {
 
+    private static final String USERNAME_CONSTRAINT = "ux_user_username";
+
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
+    private final UserImportCheckpointRepository userImportCheckpointRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
     private final TokenProvider tokenProvider;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
+    private final PasswordUpgradeService passwordUpgradeService;
+    private final DomainUserDetailsService userDetailsService;
+    private final RefreshTokenService refreshTokenService;
+    private final SingleFlight<Long, Optional<UserDTO>> userLoads;
 
-    public UserService(UserRepository userRepository, UserMapper userMapper, PasswordEncoder passwordEncoder,
-                       TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder) {
+    public UserService(UserRepository userRepository, UserImportCheckpointRepository userImportCheckpointRepository,
+                       UserMapper userMapper, PasswordEncoder passwordEncoder, TokenProvider tokenProvider,
+                       AuthenticationManagerBuilder authenticationManagerBuilder,
+                       PasswordUpgradeService passwordUpgradeService, DomainUserDetailsService userDetailsService,
+                       RefreshTokenService refreshTokenService, ApplicationProperties applicationProperties,
+                       MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.userImportCheckpointRepository = userImportCheckpointRepository;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
+        this.passwordUpgradeService = passwordUpgradeService;
+        this.userDetailsService = userDetailsService;
+        this.refreshTokenService = refreshTokenService;
+        this.userLoads = new SingleFlight<>("user", applicationProperties.getSingleFlight().getTimeoutMillis(), meterRegistry);
     }
 
     /**
      * Save a user.
+     * <p>
+     * Duplicates are detected by the unique index on the username when the user is inserted, which also rejects
+     * concurrent signups of the same username; there is no prior lookup.
      *
      * @param userDTO the entity to save.
      * @return the persisted entity.
+     * @throws UsernameAlreadyUsedException if another user has the same username.
      */
     public User save(UserDTO userDTO) {
-        userRepository.findByUsername(userDTO.getUsername().toLowerCase().trim()).ifPresent(existingUser -> {
-            throw new RuntimeException("");
-
-        });
         User newUser = new User();
         String encryptedPassword = passwordEncoder.encode(userDTO.getPassword());
-        newUser.setUsername(userDTO.getUsername().toLowerCase());
+        newUser.setUsername(normalizeUsername(userDTO.getUsername()));
         // new user gets initially a generated password
         newUser.setPassword(encryptedPassword);
         newUser.setFirstname(userDTO.getFirstname());
         newUser.setLastname(userDTO.getLastname());
-        userRepository.save(newUser);
+        try {
+            userRepository.saveAndFlush(newUser);
+        } catch (DataIntegrityViolationException e) {
+            if (isUsernameConstraintViolation(e)) {
+                throw new UsernameAlreadyUsedException(e);
+            }
+            throw e;
+        }
+        userDetailsService.evictFromCache(newUser.getUsername());
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
 
     /**
-     * Get all the users.
+     * Save a chunk of imported users, whose passwords are already hashed, along with the checkpoint of their import.
+     * <p>
+     * Users whose username is already used, in the database or earlier in the chunk, are reported as failed and not
+     * saved; the others are inserted in JDBC batches. A constraint violation, from a concurrent signup, rolls back
+     * the whole chunk and its checkpoint.
+     *
+     * @param users the users to save, with normalized usernames.
+     * @param checkpoint the checkpoint of the import after this chunk.
+     * @return the outcome of each user, in order.
+     */
+    public List<BulkItemResultDTO> saveImported(List<User> users, UserImportCheckpoint checkpoint) {
+        log.debug("Request to save {} imported Users", users.size());
+        Set<String> usedUsernames = new HashSet<>();
+        if (!users.isEmpty()) {
+            usedUsernames.addAll(userRepository.findExistingUsernames(
+                users.stream().map(User::getUsername).collect(Collectors.toSet())));
+        }
+        List<BulkItemResultDTO> results = new ArrayList<>(users.size());
+        List<User> created = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (!usedUsernames.add(user.getUsername())) {
+                results.add(BulkItemResultDTO.failed(null, "Username already used"));
+                continue;
+            }
+            userRepository.save(user);
+            created.add(user);
+            results.add(BulkItemResultDTO.created(user.getId()));
+        }
+        userImportCheckpointRepository.save(checkpoint);
+        userRepository.flush();
+        created.forEach(user -> userDetailsService.evictFromCache(user.getUsername()));
+        return results;
+    }
+
+    /**
+     * Get a page of users whose names start with the given prefixes, without their passwords.
      *
-     * @return the list of entities.
+     * @param usernamePrefix the prefix of the username, compared once normalized like usernames; may be blank.
+     * @param firstnamePrefix the prefix of the first name; may be blank.
+     * @param lastnamePrefix the prefix of the last name; may be blank.
+     * @param pageable the page.
+     * @return the page of users.
      */
     @Transactional(readOnly = true)
-    public List<UserDTO> findAll() {
-        log.debug("Request to get all Users");
-        return userRepository.findAll().stream()
-            .map(userMapper::toDto)
-            .collect(Collectors.toCollection(LinkedList::new));
+    public Page<UserSummaryDTO> findSummaries(String usernamePrefix, String firstnamePrefix, String lastnamePrefix,
+                                              Pageable pageable) {
+        log.debug("Request to get a page of Users");
+        return userRepository.findSummaries(
+            StringUtils.hasText(usernamePrefix) ? normalizeUsername(usernamePrefix) : null,
+            StringUtils.hasText(firstnamePrefix) ? firstnamePrefix : null,
+            StringUtils.hasText(lastnamePrefix) ? lastnamePrefix : null,
+            pageable);
     }
 
 
     /**
      * Get one user by id.
+     * <p>
+     * Concurrent requests for the same id share a single database load. The load runs in the repository's own
+     * transaction, so callers waiting on it do not hold a connection.
      *
      * @param id the id of the entity.
      * @return the entity.
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<UserDTO> findOne(Long id) {
         log.debug("Request to get User : {}", id);
-        return userRepository.findById(id)
-            .map(userMapper::toDto);
+        return userLoads.load(id, () -> userRepository.findById(id)
+            .map(userMapper::toDto));
     }
 
     /**
@@ -110,18 +192,73 @@ public class UserService {
      */
     public void delete(Long id) {
         log.debug("Request to delete User : {}", id);
+        userRepository.findById(id).ifPresent(user -> userDetailsService.evictFromCache(user.getUsername()));
+        refreshTokenService.deleteByUserId(id);
         userRepository.deleteById(id);
     }
 
+    /**
+     * Authenticate a user and issue a token for them.
+     * <p>
+     * The user is loaded once, by {@link org.clinic.security.DomainUserDetailsService}, in its own short transaction;
+     * no transaction is held while the password is checked. If the stored hash is not at the current encoding, it is
+     * upgraded in the background. A refresh token is issued along with the access token, so the client can renew the
+     * access token without sending the password again, see {@link RefreshTokenService#refresh(String)}.
+     *
+     * @param loginRequest the credentials of the user.
+     * @return the access and refresh tokens.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public TokenDTO login(LoginRequest loginRequest) {
         UsernamePasswordAuthenticationToken authenticationToken =
             new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword());
 
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
+        String refreshToken = null;
+        if (authentication.getPrincipal() instanceof AccountUserDetails) {
+            AccountUserDetails user = (AccountUserDetails) authentication.getPrincipal();
+            if (user.isPasswordUpgradeNeeded()) {
+                passwordUpgradeService.upgradePassword(user.getAccountId(), loginRequest.getPassword());
+            }
+            refreshToken = refreshTokenService.create(user.getAccountId());
+        }
         String jwt = tokenProvider.createToken(authentication, false);
-        HttpHeaders httpHeaders = new HttpHeaders();
-        httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
-        return new TokenDTO(jwt);
+        return new TokenDTO(jwt, refreshToken);
+    }
+
+    /**
+     * Log the current user out: revoke the access token of the request and, if given, the refresh token.
+     *
+     * @param refreshToken the refresh token of the client, or {@code null}.
+     */
+    public void logout(String refreshToken) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof JwtAuthentication) {
+            tokenProvider.revoke((JwtAuthentication) authentication);
+        }
+        if (StringUtils.hasText(refreshToken)) {
+            refreshTokenService.revoke(refreshToken);
+        }
+    }
+
+    /**
+     * Usernames are stored trimmed and lower-cased, and are unique in that form.
+     */
+    static String normalizeUsername(String username) {
+        return username.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The name of the violated constraint is reported differently by each database, with the index name at least.
+     */
+    private static boolean isUsernameConstraintViolation(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+                return constraintName != null && constraintName.toLowerCase(Locale.ENGLISH).contains(USERNAME_CONSTRAINT);
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,13 @@
+package org.clinic.service;
+
+/**
+ * This exception is thrown when a user is saved with the username of another user.
+ */
+public class UsernameAlreadyUsedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UsernameAlreadyUsedException(Throwable cause) {
+        super("Username already used", cause);
+    }
+}
@@ -0,0 +1,85 @@
+package org.clinic.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the outcome of one item of a bulk operation.
+ */
+public class BulkItemResultDTO implements Serializable {
+
+    public enum Status {
+        CREATED, UPDATED, FAILED
+    }
+
+    private int index;
+
+    private Long id;
+
+    private Status status;
+
+    private String error;
+
+    public static BulkItemResultDTO created(Long id) {
+        return new BulkItemResultDTO(id, Status.CREATED, null);
+    }
+
+    public static BulkItemResultDTO updated(Long id) {
+        return new BulkItemResultDTO(id, Status.UPDATED, null);
+    }
+
+    public static BulkItemResultDTO failed(Long id, String error) {
+        return new BulkItemResultDTO(id, Status.FAILED, error);
+    }
+
+    public BulkItemResultDTO() {
+    }
+
+    public BulkItemResultDTO(Long id, Status status, String error) {
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "BulkItemResultDTO{" +
+            "index=" + getIndex() +
+            ", id=" + getId() +
+            ", status=" + getStatus() +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
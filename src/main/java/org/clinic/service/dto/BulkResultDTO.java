@@ -0,0 +1,112 @@
+package org.clinic.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the outcome of a bulk operation: one result per input item, in input order, and throughput figures.
+ */
+public class BulkResultDTO implements Serializable {
+
+    private List<BulkItemResultDTO> items = new ArrayList<>();
+
+    private int created;
+
+    private int updated;
+
+    private int failed;
+
+    private long elapsedMillis;
+
+    private double rowsPerSecond;
+
+    private String error;
+
+    public void add(BulkItemResultDTO item) {
+        item.setIndex(items.size());
+        items.add(item);
+        switch (item.getStatus()) {
+            case CREATED:
+                created++;
+                break;
+            case UPDATED:
+                updated++;
+                break;
+            default:
+                failed++;
+        }
+    }
+
+    public List<BulkItemResultDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BulkItemResultDTO> items) {
+        this.items = items;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(int updated) {
+        this.updated = updated;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * @return the reason the operation stopped before the end of its input, or {@code null} if the whole input was read.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "BulkResultDTO{" +
+            "created=" + getCreated() +
+            ", updated=" + getUpdated() +
+            ", failed=" + getFailed() +
+            ", elapsedMillis=" + getElapsedMillis() +
+            ", rowsPerSecond=" + getRowsPerSecond() +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,40 @@
+package org.clinic.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for a batch of {@link org.clinic.domain.Clinic} entities fetched by id.
+ */
+public class ClinicBatchDTO implements Serializable {
+
+    private List<ClinicDTO> clinics = new ArrayList<>();
+
+    private List<Long> missingIds = new ArrayList<>();
+
+    public List<ClinicDTO> getClinics() {
+        return clinics;
+    }
+
+    public void setClinics(List<ClinicDTO> clinics) {
+        this.clinics = clinics;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ClinicBatchDTO{" +
+            "clinics=" + clinics.size() +
+            ", missingIds=" + missingIds +
+            "}";
+    }
+}
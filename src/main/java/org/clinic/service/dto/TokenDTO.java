@@ -2,11 +2,17 @@ package org.clinic.service.dto;
 
 public class TokenDTO {
     private String token;
+    private String refreshToken;
 
     public TokenDTO(String jwt) {
         this.token = jwt;
     }
 
+    public TokenDTO(String jwt, String refreshToken) {
+        this.token = jwt;
+        this.refreshToken = refreshToken;
+    }
+
     public TokenDTO() {
     }
 
@@ -17,4 +23,12 @@ public class TokenDTO {
     public void setToken(String token) {
         this.token = token;
     }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
 }
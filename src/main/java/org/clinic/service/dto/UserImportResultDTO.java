@@ -0,0 +1,146 @@
+package org.clinic.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO for the outcome of a user import: counts, the first row errors, and throughput figures.
+ * <p>
+ * Row errors are {@link BulkItemResultDTO}s whose index is the number of the row in the input, starting at 1 after
+ * the header. Only the first ones are listed, so the result stays small for large inputs; all of them are counted.
+ */
+public class UserImportResultDTO implements Serializable {
+
+    private String importId;
+
+    private long skipped;
+
+    private long read;
+
+    private long created;
+
+    private long failed;
+
+    private List<BulkItemResultDTO> errors = new ArrayList<>();
+
+    private long elapsedMillis;
+
+    private double rowsPerSecond;
+
+    private String error;
+
+    public UserImportResultDTO() {
+    }
+
+    public UserImportResultDTO(String importId) {
+        this.importId = importId;
+    }
+
+    /**
+     * Count a failed row, and list it if fewer than {@code maxReported} errors are listed.
+     */
+    public void addError(BulkItemResultDTO item, int maxReported) {
+        failed++;
+        if (errors.size() < maxReported) {
+            errors.add(item);
+        }
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public void setImportId(String importId) {
+        this.importId = importId;
+    }
+
+    /**
+     * @return the number of rows committed by previous runs of the same import, skipped by this one.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return the number of rows read by this run, after the skipped ones.
+     */
+    public long getRead() {
+        return read;
+    }
+
+    public void setRead(long read) {
+        this.read = read;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(long created) {
+        this.created = created;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public List<BulkItemResultDTO> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<BulkItemResultDTO> errors) {
+        this.errors = errors;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * @return the reason the import stopped before the end of its input, or {@code null} if the whole input was
+     * imported; the import can then be resumed with the same id.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserImportResultDTO{" +
+            "importId='" + getImportId() + "'" +
+            ", skipped=" + getSkipped() +
+            ", read=" + getRead() +
+            ", created=" + getCreated() +
+            ", failed=" + getFailed() +
+            ", elapsedMillis=" + getElapsedMillis() +
+            ", rowsPerSecond=" + getRowsPerSecond() +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,88 @@
+package org.clinic.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for listing {@link org.clinic.domain.User}s: a projection of the entity without its password, built
+ * directly by the query so the password column is never read.
+ */
+public class UserSummaryDTO implements Serializable {
+
+    private Long id;
+
+    private String username;
+
+    private String firstname;
+
+    private String lastname;
+
+    public UserSummaryDTO() {
+    }
+
+    public UserSummaryDTO(Long id, String username, String firstname, String lastname) {
+        this.id = id;
+        this.username = username;
+        this.firstname = firstname;
+        this.lastname = lastname;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFirstname() {
+        return firstname;
+    }
+
+    public void setFirstname(String firstname) {
+        this.firstname = firstname;
+    }
+
+    public String getLastname() {
+        return lastname;
+    }
+
+    public void setLastname(String lastname) {
+        this.lastname = lastname;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UserSummaryDTO)) {
+            return false;
+        }
+
+        return id != null && id.equals(((UserSummaryDTO) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UserSummaryDTO{" +
+            "id=" + getId() +
+            ", username='" + getUsername() + "'" +
+            ", firstname='" + getFirstname() + "'" +
+            ", lastname='" + getLastname() + "'" +
+            "}";
+    }
+}
@@ -12,7 +12,11 @@ import org.mapstruct.*;
 @Mapper(componentModel = "spring", uses = {})
 public interface ClinicMapper extends EntityMapper<ClinicDTO, Clinic> {
 
-
+    /**
+     * Copy the fields of a DTO onto an existing, managed entity.
+     */
+    @Mapping(target = "id", ignore = true)
+    void updateEntity(ClinicDTO dto, @MappingTarget Clinic clinic);
 
     default Clinic fromId(Long id) {
         if (id == null) {
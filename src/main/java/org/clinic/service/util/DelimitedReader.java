@@ -0,0 +1,93 @@
+package org.clinic.service.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A streaming reader of delimited text, such as the {@code ;}-separated files of {@code config/liquibase/fake-data}.
+ * <p>
+ * Records are read one line at a time, so memory usage does not depend on the size of the input; blank lines are
+ * skipped. A field may be quoted with {@code "} to hold the delimiter, a quote being written {@code ""} inside it;
+ * quoted fields cannot span lines.
+ */
+public class DelimitedReader implements Closeable {
+
+    private static final char QUOTE = '"';
+
+    private final BufferedReader reader;
+
+    private final char delimiter;
+
+    private long lineNumber;
+
+    public DelimitedReader(Reader reader, char delimiter) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the fields of the record, or {@code null} at the end of the input.
+     * @throws IOException if the input cannot be read.
+     * @throws IllegalArgumentException if a quoted field of the record is not closed; the next call reads the next line.
+     */
+    public List<String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.trim().isEmpty());
+        return split(line);
+    }
+
+    /**
+     * @return the number of the last line read, starting at 1.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != QUOTE) {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+                    field.append(QUOTE);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == QUOTE && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unclosed quote on line " + lineNumber);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
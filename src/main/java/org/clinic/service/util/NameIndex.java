@@ -0,0 +1,326 @@
+package org.clinic.service.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory index of names by id, for type-ahead search by prefix or substring.
+ * <p>
+ * Names are folded to lower case without diacritics, so {@code "Clínica"} is found by {@code "clinica"}. Queries of
+ * at least three characters are answered from a trigram index. Each trigram posts the ids of its names in a sorted
+ * {@code long} array, 8 bytes per posting. A query intersects the postings of its trigrams, smallest first, by binary
+ * search. The candidates left are checked against the whole query. A query costs {@code O(p log n)}, {@code p} being
+ * the size of its rarest trigram's posting and {@code n} that of the largest, plus one check per name containing all
+ * its trigrams. Matches are ranked, so every such name is checked: a query found in most names, such as
+ * {@code "clinic"}, still reads most of the index.
+ * Shorter queries match name prefixes only, read from a sorted set of the folded names.
+ * <p>
+ * Matches are ranked: the whole name, then a prefix of the name, then a prefix of a word, then any substring; shorter
+ * names first within a rank. Reads are lock-free and writes are serialized; a search running concurrently with a write
+ * sees the name either before or after the write. Ids added in increasing order, as when the index is built, are
+ * appended to the postings in place; other changes copy the postings they touch.
+ */
+public class NameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final long[] NO_IDS = new long[0];
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Comparator<Entry> BY_FOLDED_NAME = Comparator.comparing((Entry entry) -> entry.folded)
+        .thenComparing(entry -> entry.name)
+        .thenComparing(entry -> entry.id);
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final NavigableSet<Entry> sorted = new ConcurrentSkipListSet<>(BY_FOLDED_NAME);
+
+    private final Map<String, Posting> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Fold a name or a query for matching: decompose accented characters, drop the accents and lower-case.
+     */
+    public static String fold(String text) {
+        return DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Add or replace the name indexed under the given id. A {@code null} name removes the id.
+     */
+    public synchronized void put(Long id, String name) {
+        if (name == null) {
+            remove(id);
+            return;
+        }
+        Entry previous = entries.get(id);
+        if (previous != null && previous.name.equals(name)) {
+            return;
+        }
+        Entry entry = new Entry(id, name, fold(name));
+        Set<String> grams = grams(entry.folded);
+        entries.put(id, entry);
+        sorted.add(entry);
+        for (String gram : grams) {
+            postings.compute(gram, (key, posting) -> posting == null ? Posting.of(id) : posting.add(id));
+        }
+        if (previous != null) {
+            sorted.remove(previous);
+            for (String gram : grams(previous.folded)) {
+                if (!grams.contains(gram)) {
+                    removePosting(gram, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the name indexed under the given id, if any.
+     */
+    public synchronized void remove(Long id) {
+        Entry previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        sorted.remove(previous);
+        for (String gram : grams(previous.folded)) {
+            removePosting(gram, id);
+        }
+    }
+
+    /**
+     * Remove all the names.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        sorted.clear();
+        postings.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Find the best matches for the given query.
+     *
+     * @param query the text to look for, folded like the names.
+     * @param limit the maximum number of matches.
+     * @return the matches, best first.
+     */
+    public List<Entry> search(String query, int limit) {
+        String folded = fold(query).trim();
+        if (folded.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        if (folded.length() < GRAM_LENGTH) {
+            return searchPrefix(folded, limit);
+        }
+        long[] candidates = candidates(folded);
+        // Keep the best matches in a heap whose head is the worst of them
+        Comparator<Match> byRank = Comparator.comparingInt((Match match) -> match.rank)
+            .thenComparing(match -> match.entry, Comparator.comparingInt((Entry entry) -> entry.folded.length())
+                .thenComparing(BY_FOLDED_NAME));
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, byRank.reversed());
+        for (long id : candidates) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                continue;
+            }
+            int position = entry.folded.indexOf(folded);
+            if (position < 0) {
+                continue;
+            }
+            best.add(new Match(entry, rank(entry.folded, folded, position)));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Entry> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().entry);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * The ids posted under every trigram of a folded query, in increasing order.
+     */
+    long[] candidates(String folded) {
+        List<Posting> found = new ArrayList<>();
+        for (String gram : grams(folded)) {
+            Posting posting = postings.get(gram);
+            if (posting == null) {
+                return NO_IDS;
+            }
+            found.add(posting);
+        }
+        if (found.isEmpty()) {
+            return NO_IDS;
+        }
+        found.sort(Comparator.comparingInt(posting -> posting.size));
+        Posting smallest = found.get(0);
+        long[] candidates = Arrays.copyOf(smallest.ids, smallest.size);
+        int count = smallest.size;
+        for (int i = 1; i < found.size() && count > 0; i++) {
+            Posting posting = found.get(i);
+            int kept = 0;
+            for (int j = 0; j < count; j++) {
+                if (posting.contains(candidates[j])) {
+                    candidates[kept++] = candidates[j];
+                }
+            }
+            count = kept;
+        }
+        return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+    }
+
+    private List<Entry> searchPrefix(String prefix, int limit) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : sorted.tailSet(new Entry(Long.MIN_VALUE, "", prefix), true)) {
+            if (!entry.folded.startsWith(prefix) || result.size() == limit) {
+                break;
+            }
+            // Skip the previous name of an entry being replaced
+            if (entries.get(entry.id) == entry) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private void removePosting(String gram, Long id) {
+        postings.computeIfPresent(gram, (key, posting) -> posting.remove(id));
+    }
+
+    private static int rank(String name, String query, int position) {
+        if (position == 0) {
+            return name.length() == query.length() ? 0 : 1;
+        }
+        if (!Character.isLetterOrDigit(name.charAt(position - 1))) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static Set<String> grams(String folded) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * A name of the index.
+     */
+    public static final class Entry {
+
+        private final Long id;
+
+        private final String name;
+
+        private final String folded;
+
+        private Entry(Long id, String name, String folded) {
+            this.id = id;
+            this.name = name;
+            this.folded = folded;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The ids posted under a trigram: the first {@code size} elements of {@code ids}, sorted. A posting is never
+     * changed once published: adding the greatest id writes past the end of the ids of the current posting and
+     * publishes a longer one over the same array, any other change publishes a copy.
+     */
+    private static final class Posting {
+
+        private final long[] ids;
+
+        private final int size;
+
+        private Posting(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        static Posting of(long id) {
+            long[] ids = new long[4];
+            ids[0] = id;
+            return new Posting(ids, 1);
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        Posting add(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return this;
+            }
+            int insertion = -index - 1;
+            if (insertion == size && size < ids.length) {
+                ids[size] = id;
+                return new Posting(ids, size + 1);
+            }
+            long[] copy = new long[size + (size >> 1) + 1];
+            System.arraycopy(ids, 0, copy, 0, insertion);
+            copy[insertion] = id;
+            System.arraycopy(ids, insertion, copy, insertion + 1, size - insertion);
+            return new Posting(copy, size + 1);
+        }
+
+        /**
+         * @return the posting without the id, or {@code null} if it was the last one.
+         */
+        Posting remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return this;
+            }
+            if (size == 1) {
+                return null;
+            }
+            long[] copy = new long[size - 1];
+            System.arraycopy(ids, 0, copy, 0, index);
+            System.arraycopy(ids, index + 1, copy, index, size - index - 1);
+            return new Posting(copy, size - 1);
+        }
+    }
+
+    private static final class Match {
+
+        private final Entry entry;
+
+        private final int rank;
+
+        private Match(Entry entry, int rank) {
+            this.entry = entry;
+            this.rank = rank;
+        }
+    }
+}
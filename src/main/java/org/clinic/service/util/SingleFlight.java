@@ -0,0 +1,96 @@
+package org.clinic.service.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key into a single execution.
+ * <p>
+ * The first caller for a key runs the loader on its own thread; callers arriving while that load is in flight wait
+ * for its outcome instead of running their own, and get either the same value or the same exception. A waiting
+ * caller gives up after the configured timeout with a {@link QueryTimeoutException}.
+ * <p>
+ * Loads are counted in the {@value #METRIC_NAME} counter, tagged with the flight name and the outcome:
+ * {@code executed}, {@code coalesced} or {@code timeout}.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of loaded values.
+ */
+public class SingleFlight<K, V> {
+
+    public static final String METRIC_NAME = "singleflight.loads";
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private final long timeoutMillis;
+
+    private final Counter executed;
+
+    private final Counter coalesced;
+
+    private final Counter timeouts;
+
+    public SingleFlight(String name, long timeoutMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+        this.executed = meterRegistry.counter(METRIC_NAME, "name", name, "result", "executed");
+        this.coalesced = meterRegistry.counter(METRIC_NAME, "name", name, "result", "coalesced");
+        this.timeouts = meterRegistry.counter(METRIC_NAME, "name", name, "result", "timeout");
+    }
+
+    /**
+     * Load the value for a key, sharing the load with any concurrent caller for the same key.
+     *
+     * @param key the key to load.
+     * @param loader the loader, run at most once per concurrent group of callers.
+     * @return the loaded value.
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            executed.increment();
+            try {
+                V value = loader.get();
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+        coalesced.increment();
+        try {
+            return existing.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new QueryTimeoutException("Timed out waiting for the in-flight load of " + name + " " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted while waiting for the in-flight load of " + name + " " + key, e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Utility classes for the service layer.
+ */
+package org.clinic.service.util;
@@ -1,17 +1,35 @@
 package org.clinic.web.rest;
 
+import org.clinic.config.ApplicationProperties;
+import org.clinic.service.ClinicBulkService;
+import org.clinic.service.ClinicSearchService;
 import org.clinic.service.ClinicService;
 import org.clinic.web.rest.errors.BadRequestAlertException;
+import org.clinic.service.dto.BulkResultDTO;
+import org.clinic.service.dto.ClinicBatchDTO;
 import org.clinic.service.dto.ClinicDTO;
+import org.clinic.web.rest.util.KeysetPaginationUtil;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -28,13 +46,28 @@ public class ClinicResource {
 
     private static final String ENTITY_NAME = "clinicClinic";
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final ClinicService clinicService;
 
-    public ClinicResource(ClinicService clinicService) {
+    private final ClinicBulkService clinicBulkService;
+
+    private final ClinicSearchService clinicSearchService;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final ObjectMapper objectMapper;
+
+    public ClinicResource(ClinicService clinicService, ClinicBulkService clinicBulkService, ClinicSearchService clinicSearchService,
+                          ApplicationProperties applicationProperties, ObjectMapper objectMapper) {
         this.clinicService = clinicService;
+        this.clinicBulkService = clinicBulkService;
+        this.clinicSearchService = clinicSearchService;
+        this.applicationProperties = applicationProperties;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -56,6 +89,25 @@ public class ClinicResource {
             .body(result);
     }
 
+    /**
+     * {@code POST  /clinics/bulk} : Create or update clinics in bulk.
+     * <p>
+     * The body is either a JSON array or newline-delimited JSON; it is read as a stream and saved in chunks, one
+     * transaction per chunk. Clinics without an id are created, the others are updated.
+     *
+     * @param body the clinics to save.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome of each clinic, in input order.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/clinics/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<BulkResultDTO> bulkSaveClinics(InputStream body) throws IOException {
+        log.debug("REST request to bulk save Clinics");
+        try (MappingIterator<ClinicDTO> clinicDTOs = objectMapper.readerFor(ClinicDTO.class).readValues(body)) {
+            BulkResultDTO result = clinicBulkService.saveAll(clinicDTOs);
+            return ResponseEntity.ok().body(result);
+        }
+    }
+
     /**
      * {@code PUT  /clinics} : Updates an existing clinic.
      *
@@ -78,14 +130,119 @@ public class ClinicResource {
     }
 
     /**
-     * {@code GET  /clinics} : get all the clinics.
+     * {@code GET  /clinics} : get a page of clinics, using keyset pagination.
      *
+     * @param cursor the opaque cursor returned with the previous page, or {@code null} for the first page.
+     * @param size the requested page size, capped by {@code application.clinic.pagination.max-size}.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of clinics in body.
      */
     @GetMapping("/clinics")
-    public List<ClinicDTO> getAllClinics() {
-        log.debug("REST request to get all Clinics");
-        return clinicService.findAll();
+    public ResponseEntity<List<ClinicDTO>> getAllClinics(
+        @RequestParam(name = KeysetPaginationUtil.CURSOR_PARAM, required = false) String cursor,
+        @RequestParam(name = KeysetPaginationUtil.SIZE_PARAM, required = false) Integer size) {
+        log.debug("REST request to get a page of Clinics");
+        Long afterId = null;
+        if (cursor != null) {
+            afterId = KeysetPaginationUtil.decodeCursor(cursor)
+                .orElseThrow(() -> new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid"));
+        }
+        ApplicationProperties.Pagination pagination = applicationProperties.getClinic().getPagination();
+        int pageSize = size == null || size < 1 ? pagination.getDefaultSize() : Math.min(size, pagination.getMaxSize());
+
+        // Fetch one extra row to know whether there is a next page, without a count query
+        List<ClinicDTO> page = clinicService.findPage(afterId, pageSize + 1);
+        String nextCursor = null;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            nextCursor = KeysetPaginationUtil.encodeCursor(page.get(pageSize - 1).getId());
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetPaginationHttpHeaders(
+            ServletUriComponentsBuilder.fromCurrentRequest(), pageSize, nextCursor);
+        return ResponseEntity.ok().headers(headers).body(page);
+    }
+
+    /**
+     * {@code GET  /_search/clinics?q=} : search the clinics by name, for type-ahead.
+     *
+     * @param query the prefix or substring of the name to look for, ignoring case and diacritics.
+     * @param limit the maximum number of clinics to return, capped by {@code application.clinic.search.max-limit}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the best matching clinics in body, best first.
+     */
+    @GetMapping("/_search/clinics")
+    public ResponseEntity<List<ClinicDTO>> searchClinics(@RequestParam("q") String query,
+                                                         @RequestParam(required = false) Integer limit) {
+        log.debug("REST request to search Clinics for query {}", query);
+        ApplicationProperties.Clinic.Search search = applicationProperties.getClinic().getSearch();
+        int maxResults = limit == null || limit < 1 ? search.getDefaultLimit() : Math.min(limit, search.getMaxLimit());
+        return ResponseEntity.ok().body(clinicSearchService.search(query, maxResults));
+    }
+
+    /**
+     * {@code GET  /clinics?ids=} : get the clinics with the given ids.
+     *
+     * @param ids the ids of the clinics to retrieve.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the clinics found, in the requested
+     * order, and the ids that were not found, or with status {@code 400 (Bad Request)} if too many ids are requested.
+     */
+    @GetMapping(value = "/clinics", params = "ids")
+    public ClinicBatchDTO getClinicsById(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Clinics : {}", ids);
+        return findClinicsById(ids);
+    }
+
+    /**
+     * {@code POST  /clinics/_batch-get} : get the clinics with the given ids, for id lists too long for a query string.
+     *
+     * @param ids the ids of the clinics to retrieve.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the clinics found, in the requested
+     * order, and the ids that were not found, or with status {@code 400 (Bad Request)} if too many ids are requested.
+     */
+    @PostMapping("/clinics/_batch-get")
+    public ClinicBatchDTO getClinicsByIdInBody(@RequestBody List<Long> ids) {
+        log.debug("REST request to get {} Clinics by id", ids.size());
+        return findClinicsById(ids);
+    }
+
+    private ClinicBatchDTO findClinicsById(List<Long> ids) {
+        if (ids.size() > applicationProperties.getClinic().getMultiGet().getMaxIds()) {
+            throw new BadRequestAlertException("Too many ids requested", ENTITY_NAME, "toomanyids");
+        }
+        if (ids.contains(null)) {
+            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+        }
+        return clinicService.findAllById(ids);
+    }
+
+    /**
+     * {@code GET  /clinics/export} : export all the clinics as newline-delimited JSON.
+     * <p>
+     * Clinics are streamed from the database straight to the response, one JSON document per line,
+     * so memory usage does not depend on the number of clinics.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the clinics in body.
+     */
+    @GetMapping(value = "/clinics/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportClinics() {
+        log.debug("REST request to export all Clinics");
+        // One clinic per line, even where the shared mapper indents its output
+        ObjectWriter writer = objectMapper.writerFor(ClinicDTO.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .without(SerializationFeature.INDENT_OUTPUT);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // Values are separated by the newlines written below, not by the default space
+                generator.setRootValueSeparator(null);
+                clinicService.exportAll(clinicDTO -> {
+                    try {
+                        writer.writeValue(generator, clinicDTO);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
     }
 
     /**
@@ -113,4 +270,23 @@ public class ClinicResource {
         clinicService.delete(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id.toString())).build();
     }
+
+    /**
+     * {@code DELETE  /clinics?ids=} : delete the clinics with the given ids.
+     *
+     * @param ids the ids of the clinics to delete.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 400 (Bad Request)}
+     * if too many ids are given.
+     */
+    @DeleteMapping(value = "/clinics", params = "ids")
+    public ResponseEntity<Void> deleteClinics(@RequestParam List<Long> ids) {
+        log.debug("REST request to delete Clinics : {}", ids);
+        if (ids.size() > applicationProperties.getClinic().getMultiGet().getMaxIds()) {
+            throw new BadRequestAlertException("Too many ids given", ENTITY_NAME, "toomanyids");
+        }
+        int deleted = clinicService.deleteAll(ids);
+        return ResponseEntity.noContent()
+            .headers(HeaderUtil.createAlert(applicationName, applicationName + "." + ENTITY_NAME + ".bulkDeleted", String.valueOf(deleted)))
+            .build();
+    }
 }
@@ -1,24 +1,46 @@
 package org.clinic.web.rest;
 
+import org.clinic.config.ApplicationProperties;
 import org.clinic.domain.User;
+import org.clinic.security.AuthoritiesConstants;
+import org.clinic.service.RefreshTokenService;
+import org.clinic.service.UserImportService;
 import org.clinic.service.UserService;
 import org.clinic.service.dto.LoginRequest;
+import org.clinic.service.dto.RefreshTokenRequest;
 import org.clinic.service.dto.TokenDTO;
+import org.clinic.service.dto.UserImportResultDTO;
+import org.clinic.service.dto.UserSummaryDTO;
 import org.clinic.web.rest.errors.BadRequestAlertException;
 import org.clinic.service.dto.UserDTO;
 
 import io.github.jhipster.web.util.HeaderUtil;
+import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * REST controller for managing {@link org.clinic.domain.User}.
@@ -31,13 +53,25 @@ public class UserResource {
 
     private static final String ENTITY_NAME = "clinicUser";
 
+    private static final Set<String> SORT_PROPERTIES = new HashSet<>(Arrays.asList("id", "username", "firstname", "lastname"));
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final UserService userService;
 
-    public UserResource(UserService userService) {
+    private final RefreshTokenService refreshTokenService;
+
+    private final UserImportService userImportService;
+
+    private final ApplicationProperties applicationProperties;
+
+    public UserResource(UserService userService, RefreshTokenService refreshTokenService,
+                        UserImportService userImportService, ApplicationProperties applicationProperties) {
         this.userService = userService;
+        this.refreshTokenService = refreshTokenService;
+        this.userImportService = userImportService;
+        this.applicationProperties = applicationProperties;
     }
 
     /**
@@ -59,11 +93,58 @@ public class UserResource {
             .body(result);
     }
 
+    /**
+     * {@code POST  /users/import} : Import users in bulk.
+     * <p>
+     * The body is {@code ;}-separated text with a header row naming the columns, at least {@code username} and
+     * {@code password}; it is read as a stream and saved in chunks, one transaction per chunk. Sending the same body
+     * again with the same import id resumes an interrupted import after its last committed chunk.
+     *
+     * @param importId the id of the import, chosen by the client.
+     * @param body the users to import.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the counts and the first row errors,
+     * or with status {@code 409 (Conflict)} if another import is running.
+     */
+    @PostMapping(value = "/users/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<UserImportResultDTO> importUsers(@RequestParam String importId, InputStream body) {
+        log.debug("REST request to import Users : {}", importId);
+        if (importId.isEmpty() || importId.length() > 64) {
+            throw new BadRequestAlertException("The import id must have 1 to 64 characters", ENTITY_NAME, "importidinvalid");
+        }
+        UserImportResultDTO result = userImportService.importUsers(importId, new InputStreamReader(body, StandardCharsets.UTF_8));
+        return ResponseEntity.ok(result);
+    }
+
     @PostMapping("/authenticate")
     public ResponseEntity<TokenDTO> login(@RequestBody LoginRequest loginRequest) {
         return ResponseEntity.ok(userService.login(loginRequest));
     }
 
+    /**
+     * {@code POST  /authenticate/refresh} : Renew an access token with a refresh token.
+     *
+     * @param refreshTokenRequest the refresh token, which is used up.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the new access and refresh tokens,
+     * or with status {@code 401 (Unauthorized)} if the refresh token is unknown, expired or already used.
+     */
+    @PostMapping("/authenticate/refresh")
+    public ResponseEntity<TokenDTO> refresh(@RequestBody RefreshTokenRequest refreshTokenRequest) {
+        return ResponseEntity.ok(refreshTokenService.refresh(refreshTokenRequest.getRefreshToken()));
+    }
+
+    /**
+     * {@code POST  /logout} : Revoke the access token of the request and, if given, the refresh token.
+     *
+     * @param refreshTokenRequest the refresh token, optional.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody(required = false) RefreshTokenRequest refreshTokenRequest) {
+        userService.logout(refreshTokenRequest != null ? refreshTokenRequest.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * {@code PUT  /users} : Updates an existing user.
      *
@@ -86,14 +167,44 @@ public class UserResource {
 //    }
 
     /**
-     * {@code GET  /users} : get all the users.
+     * {@code GET  /users} : get a page of users, optionally filtered by name prefixes.
+     * <p>
+     * Only the id and names of the users are returned; their passwords are not even read.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of users in body.
+     * @param username the prefix of the usernames, case-insensitive.
+     * @param firstname the prefix of the first names.
+     * @param lastname the prefix of the last names.
+     * @param page the page number, starting at 0.
+     * @param size the requested page size, capped by {@code application.user.pagination.max-size}.
+     * @param sort the sort, on {@code id}, {@code username}, {@code firstname} or {@code lastname}; ties are broken by id.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of users in body,
+     * or with status {@code 400 (Bad Request)} if the sort is not supported or the page starts beyond the largest offset.
      */
     @GetMapping("/users")
-    public List<UserDTO> getAllUsers() {
-        log.debug("REST request to get all Users");
-        return userService.findAll();
+    public ResponseEntity<List<UserSummaryDTO>> getAllUsers(
+        @RequestParam(required = false) String username,
+        @RequestParam(required = false) String firstname,
+        @RequestParam(required = false) String lastname,
+        @RequestParam(required = false) Integer page,
+        @RequestParam(required = false) Integer size,
+        Sort sort) {
+        log.debug("REST request to get a page of Users");
+        for (Sort.Order order : sort) {
+            if (!SORT_PROPERTIES.contains(order.getProperty())) {
+                throw new BadRequestAlertException("Invalid sort property", ENTITY_NAME, "sortinvalid");
+            }
+        }
+        ApplicationProperties.Pagination pagination = applicationProperties.getUser().getPagination();
+        int pageSize = size == null || size < 1 ? pagination.getDefaultSize() : Math.min(size, pagination.getMaxSize());
+        int pageNumber = page == null || page < 0 ? 0 : page;
+        // The query takes its offset as an int
+        if ((long) pageNumber * pageSize > Integer.MAX_VALUE) {
+            throw new BadRequestAlertException("Invalid page", ENTITY_NAME, "pageinvalid");
+        }
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
+        Page<UserSummaryDTO> result = userService.findSummaries(username, firstname, lastname, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), result);
+        return ResponseEntity.ok().headers(headers).body(result.getContent());
     }
 
     /**
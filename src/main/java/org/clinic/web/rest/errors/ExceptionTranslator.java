@@ -1,9 +1,14 @@
 package org.clinic.web.rest.errors;
 
-import io.github.jhipster.web.util.HeaderUtil;
+import org.clinic.security.PasswordHashingRejectedException;
+import org.clinic.security.ratelimit.RateLimitExceededException;
+import org.clinic.service.UserImportInProgressException;
+import org.clinic.service.UsernameAlreadyUsedException;
 
+import io.github.jhipster.web.util.HeaderUtil;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -104,4 +109,42 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
             .build();
         return create(ex, problem, request);
     }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleUsernameAlreadyUsed(UsernameAlreadyUsedException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.CONFLICT)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_USERNAME_ALREADY_USED)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleUserImportInProgress(UserImportInProgressException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.CONFLICT)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_USER_IMPORT_IN_PROGRESS)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePasswordHashingRejected(PasswordHashingRejectedException ex, NativeWebRequest request) {
+        return tooManyRequests(ex, ex.getRetryAfterSeconds(), request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleRateLimitExceeded(RateLimitExceededException ex, NativeWebRequest request) {
+        return tooManyRequests(ex, ex.getRetryAfterSeconds(), request);
+    }
+
+    private ResponseEntity<Problem> tooManyRequests(Exception ex, long retryAfterSeconds, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.TOO_MANY_REQUESTS)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_TOO_MANY_REQUESTS)
+            .build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return create(ex, problem, request, headers);
+    }
 }
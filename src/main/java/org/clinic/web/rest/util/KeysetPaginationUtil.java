@@ -0,0 +1,84 @@
+package org.clinic.web.rest.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Utility class for handling keyset (cursor) pagination.
+ * <p>
+ * Cursors are opaque to clients: they encode the sort key of the last element of a page, and are handed back
+ * through the {@code Link} header and the {@value #NEXT_CURSOR_HEADER} header.
+ */
+public final class KeysetPaginationUtil {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final String CURSOR_PARAM = "cursor";
+
+    public static final String SIZE_PARAM = "size";
+
+    private KeysetPaginationUtil() {
+    }
+
+    /**
+     * Encode the key of the last element of a page into an opaque cursor.
+     *
+     * @param lastId the id of the last element of the page.
+     * @return the cursor.
+     */
+    public static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encodeCursor(Long)}.
+     *
+     * @param cursor the cursor, may be {@code null}.
+     * @return the decoded key, or empty if the cursor is {@code null} or malformed.
+     */
+    public static Optional<Long> decodeCursor(String cursor) {
+        if (cursor == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Generate pagination headers for a keyset page.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param size the page size.
+     * @param nextCursor the cursor of the next page, or {@code null} if this is the last page.
+     * @return the {@link HttpHeaders}.
+     */
+    public static HttpHeaders generateKeysetPaginationHttpHeaders(UriComponentsBuilder uriBuilder, int size, String nextCursor) {
+        HttpHeaders headers = new HttpHeaders();
+        StringBuilder link = new StringBuilder();
+        if (nextCursor != null) {
+            headers.add(NEXT_CURSOR_HEADER, nextCursor);
+            link.append(prepareLink(uriBuilder, size, nextCursor, "next")).append(",");
+        }
+        link.append(prepareLink(uriBuilder, size, null, "first"));
+        headers.add(HttpHeaders.LINK, link.toString());
+        return headers;
+    }
+
+    private static String prepareLink(UriComponentsBuilder uriBuilder, int size, String cursor, String relType) {
+        String uri = uriBuilder.cloneBuilder()
+            .replaceQueryParam(CURSOR_PARAM, cursor == null ? new Object[0] : new Object[]{cursor})
+            .replaceQueryParam(SIZE_PARAM, size)
+            .toUriString()
+            .replace(",", "%2C")
+            .replace(";", "%3B");
+        return "<" + uri + ">; rel=\"" + relType + "\"";
+    }
+}
@@ -0,0 +1,62 @@
+package org.clinic.config;
+
+import org.clinic.ClinicApp;
+import org.clinic.domain.Clinic;
+import org.clinic.repository.ClinicRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the pooled table id generator: inserts must be sent to the database in JDBC batches.
+ */
+@SpringBootTest(classes = ClinicApp.class)
+public class HibernateBatchInsertIT {
+
+    private static final int CLINIC_COUNT = 1000;
+
+    @Autowired
+    private ClinicRepository clinicRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @Transactional
+    public void testInsertsAreBatched() {
+        List<Clinic> clinics = new ArrayList<>();
+        for (int i = 0; i < CLINIC_COUNT; i++) {
+            clinics.add(new Clinic().name("clinic " + i));
+        }
+        statistics.clear();
+
+        clinicRepository.saveAll(clinics);
+        em.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(CLINIC_COUNT);
+        // 40 batches of 25 inserts, plus one select and one update of id_generator per 50 ids
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(CLINIC_COUNT / 25 + 2 * (CLINIC_COUNT / 50 + 1));
+        assertThat(clinics).extracting(Clinic::getId).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,103 @@
+package org.clinic.config;
+
+import org.clinic.ClinicApp;
+import org.clinic.domain.Clinic;
+import org.clinic.domain.User;
+import org.clinic.repository.ClinicRepository;
+import org.clinic.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the Hibernate second-level cache configuration.
+ * <p>
+ * Each repository call runs in its own transaction and persistence context, so a lookup that issues no SQL
+ * statement can only have been served by the second-level cache.
+ */
+@SpringBootTest(classes = ClinicApp.class)
+public class HibernateSecondLevelCacheIT {
+
+    @Autowired
+    private ClinicRepository clinicRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private Clinic clinic;
+
+    private User user;
+
+    @BeforeEach
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        clinic = clinicRepository.saveAndFlush(new Clinic().name("cached clinic"));
+        user = userRepository.saveAndFlush(new User().username("cached-user").password("password"));
+    }
+
+    @AfterEach
+    public void cleanup() {
+        clinicRepository.deleteById(clinic.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    public void testRepeatedClinicLookupsIssueNoSql() {
+        clinicRepository.findById(clinic.getId());
+        statistics.clear();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(clinicRepository.findById(clinic.getId())).isPresent();
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void testRepeatedUsernameLookupsIssueNoSql() {
+        userRepository.findByUsername(user.getUsername());
+        statistics.clear();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(userRepository.findByUsername(user.getUsername())).isPresent();
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getNaturalIdCacheHitCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void testRegionHitsAreExportedAsMetrics() {
+        clinicRepository.findById(clinic.getId());
+        double hitsBefore = regionHits(Clinic.class.getName());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(clinicRepository.findById(clinic.getId())).isPresent();
+        }
+
+        assertThat(regionHits(Clinic.class.getName()) - hitsBefore).isEqualTo(10);
+    }
+
+    private double regionHits(String region) {
+        return meterRegistry.get("cache.gets").tag("cacheManager", "hibernate").tag("cache", region).tag("result", "hit")
+            .functionCounter().count();
+    }
+}
@@ -0,0 +1,70 @@
+package org.clinic.config.audit;
+
+import org.clinic.ClinicApp;
+import org.clinic.repository.PersistenceAuditEventRepository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link AsyncAuditEventRepository}: events must be written in the background, in JDBC
+ * batches, and found with their data once written.
+ */
+@SpringBootTest(classes = ClinicApp.class, properties = "application.audit.enabled=true")
+public class AsyncAuditEventRepositoryIT {
+
+    private static final int EVENT_COUNT = 100;
+
+    @Autowired
+    private AuditEventRepository auditEventRepository;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    public void cleanup() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testEventsAreWrittenInBatches() {
+        assertThat(auditEventRepository).isInstanceOf(AsyncAuditEventRepository.class);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Instant start = Instant.now().minusSeconds(1);
+
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("remoteAddress", "127.0.0.1");
+            data.put("attempt", i);
+            auditEventRepository.add(new AuditEvent("audit-user", "AUTHENTICATION_FAILURE", data));
+        }
+        assertThat(((AsyncAuditEventRepository) auditEventRepository).flush(5000)).isTrue();
+
+        // One insert per event, its data being a JSON column, sent in batches of 25 inserts
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(EVENT_COUNT);
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(EVENT_COUNT);
+
+        List<AuditEvent> events = auditEventRepository.find("audit-user", start, "AUTHENTICATION_FAILURE");
+        assertThat(events).hasSize(EVENT_COUNT);
+        assertThat(events).allSatisfy(event -> assertThat(event.getData()).containsEntry("remoteAddress", "127.0.0.1"));
+        assertThat(auditEventRepository.find("another-user", null, null)).isEmpty();
+    }
+}
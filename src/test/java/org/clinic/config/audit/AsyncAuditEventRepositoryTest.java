@@ -0,0 +1,284 @@
+package org.clinic.config.audit;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.config.ApplicationProperties.Audit.OverflowPolicy;
+import org.clinic.config.ApplicationProperties.Audit.StorageLayout;
+import org.clinic.domain.PersistentAuditEvent;
+import org.clinic.repository.PersistenceAuditEventRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link AsyncAuditEventRepository}.
+ */
+public class AsyncAuditEventRepositoryTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @TempDir
+    Path spillDirectory;
+
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private AsyncAuditEventRepository auditEventRepository;
+
+    /**
+     * The events saved, one list per transaction.
+     */
+    private final List<List<PersistentAuditEvent>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        persistenceAuditEventRepository = mock(PersistenceAuditEventRepository.class);
+        when(persistenceAuditEventRepository.saveAll(any())).then(invocation -> {
+            List<PersistentAuditEvent> batch = new ArrayList<>();
+            ((Iterable<PersistentAuditEvent>) invocation.getArgument(0)).forEach(batch::add);
+            batches.add(batch);
+            return batch;
+        });
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Audit audit = applicationProperties.getAudit();
+        audit.setBufferSize(4);
+        audit.setBatchSize(2);
+        audit.setFlushIntervalMillis(10);
+        audit.setBlockTimeoutMillis(10);
+        audit.setSpillDirectory(spillDirectory.toString());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void stop() {
+        if (auditEventRepository != null) {
+            auditEventRepository.stop();
+        }
+    }
+
+    @Test
+    public void testEventsAreWrittenInBatches() {
+        createRepository(OverflowPolicy.DROP);
+        auditEventRepository.start();
+
+        for (int i = 0; i < 3; i++) {
+            auditEventRepository.add(event("user-" + i));
+        }
+
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        assertThat(savedPrincipals()).containsExactly("user-0", "user-1", "user-2");
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        assertThat(meterRegistry.get("audit.events.written").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("audit.events.batch.size").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("audit.events.lag").timer().count()).isEqualTo(batches.size());
+        assertThat(meterRegistry.get("audit.events.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    public void testDropPolicyDropsEventsWhenTheBufferIsFull() {
+        createRepository(OverflowPolicy.DROP);
+
+        for (int i = 0; i < 6; i++) {
+            auditEventRepository.add(event("user-" + i));
+        }
+
+        assertThat(dropped("overflow")).isEqualTo(2);
+        assertThat(meterRegistry.get("audit.events.pending").gauge().value()).isEqualTo(4);
+
+        auditEventRepository.start();
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        assertThat(savedPrincipals()).containsExactly("user-0", "user-1", "user-2", "user-3");
+    }
+
+    @Test
+    public void testBlockPolicyDropsEventsAfterTheTimeout() {
+        createRepository(OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 5; i++) {
+            auditEventRepository.add(event("user-" + i));
+        }
+
+        assertThat(dropped("overflow")).isEqualTo(1);
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForTheWriter() {
+        createRepository(OverflowPolicy.BLOCK);
+        applicationProperties.getAudit().setBlockTimeoutMillis(TIMEOUT_MILLIS);
+        auditEventRepository.start();
+
+        for (int i = 0; i < 100; i++) {
+            auditEventRepository.add(event("user-" + i));
+        }
+
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        assertThat(savedPrincipals()).hasSize(100);
+        assertThat(dropped("overflow")).isZero();
+    }
+
+    @Test
+    public void testSpillPolicyWritesSpilledEventsOnceTheBufferIsIdle() throws Exception {
+        createRepository(OverflowPolicy.SPILL);
+
+        for (int i = 0; i < 6; i++) {
+            auditEventRepository.add(event("user-" + i));
+        }
+
+        assertThat(meterRegistry.get("audit.events.spilled").counter().count()).isEqualTo(2);
+        assertThat(spillDirectory.resolve("audit-events.ndjson")).exists();
+
+        auditEventRepository.start();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (spilledFiles() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(savedPrincipals()).containsExactlyInAnyOrder("user-0", "user-1", "user-2", "user-3", "user-4", "user-5");
+        assertThat(savedEvents()).filteredOn(event -> event.getPrincipal().equals("user-5"))
+            .extracting(PersistentAuditEvent::getCompactData)
+            .containsExactly(Collections.singletonMap("remoteAddress", "127.0.0.1"));
+        assertThat(spilledFiles()).isZero();
+    }
+
+    @Test
+    public void testFailedBatchesAreWrittenOneEventAtATime() {
+        doThrow(new DataIntegrityViolationException("batch")).when(persistenceAuditEventRepository).saveAll(any());
+        when(persistenceAuditEventRepository.save(any(PersistentAuditEvent.class))).then(invocation -> {
+            PersistentAuditEvent event = invocation.getArgument(0);
+            if (event.getPrincipal().equals("invalid")) {
+                throw new DataIntegrityViolationException("invalid");
+            }
+            batches.add(Collections.singletonList(event));
+            return event;
+        });
+        createRepository(OverflowPolicy.DROP);
+        auditEventRepository.add(event("valid"));
+        auditEventRepository.add(event("invalid"));
+
+        auditEventRepository.start();
+
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        assertThat(savedPrincipals()).containsExactly("valid");
+        assertThat(dropped("write_failed")).isEqualTo(1);
+    }
+
+    @Test
+    public void testStopFlushesTheBuffer() {
+        createRepository(OverflowPolicy.DROP);
+        applicationProperties.getAudit().setFlushIntervalMillis(60_000);
+        auditEventRepository.start();
+
+        auditEventRepository.add(event("user-0"));
+        auditEventRepository.stop();
+
+        assertThat(auditEventRepository.isRunning()).isFalse();
+        assertThat(savedPrincipals()).containsExactly("user-0");
+    }
+
+    @Test
+    public void testJsonLayoutStoresTheDataInOneColumn() {
+        createRepository(OverflowPolicy.DROP);
+        Map<String, Object> data = new HashMap<>();
+        data.put("message", repeat('m', 300));
+        auditEventRepository.add(new AuditEvent("user", "AUTHENTICATION_FAILURE", data));
+
+        auditEventRepository.start();
+
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        PersistentAuditEvent event = savedEvents().get(0);
+        assertThat(event.getData()).isEmpty();
+        assertThat(event.getCompactData()).containsEntry("message", repeat('m', 300));
+        assertThat(new AuditEventConverter().convertToAuditEvent(event).getData()).containsEntry("message", repeat('m', 300));
+    }
+
+    @Test
+    public void testTableLayoutTruncatesEventsToTheirColumns() {
+        createRepository(OverflowPolicy.DROP);
+        applicationProperties.getAudit().setStorageLayout(StorageLayout.TABLE);
+        Map<String, Object> data = new HashMap<>();
+        data.put("message", repeat('m', 300));
+        auditEventRepository.add(new AuditEvent(repeat('p', 60), "AUTHENTICATION_FAILURE", data));
+        auditEventRepository.add(new AuditEvent("user", "AUTHORIZATION_FAILURE", Collections.emptyMap()));
+
+        auditEventRepository.start();
+
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        assertThat(savedEvents()).hasSize(1);
+        PersistentAuditEvent event = savedEvents().get(0);
+        assertThat(event.getPrincipal()).hasSize(AsyncAuditEventRepository.PRINCIPAL_MAX_LENGTH);
+        assertThat(event.getCompactData()).isNull();
+        assertThat(event.getData().get("message")).hasSize(AsyncAuditEventRepository.DATA_VALUE_MAX_LENGTH);
+        assertThat(new AuditEventConverter().convertToAuditEvent(event).getData()).containsKey("message");
+    }
+
+    private void createRepository(OverflowPolicy overflowPolicy) {
+        applicationProperties.getAudit().setOverflowPolicy(overflowPolicy);
+        auditEventRepository = new AsyncAuditEventRepository(persistenceAuditEventRepository, new AuditEventConverter(),
+            mock(PlatformTransactionManager.class), new ObjectMapper().registerModule(new JavaTimeModule()),
+            applicationProperties, meterRegistry);
+    }
+
+    private List<PersistentAuditEvent> savedEvents() {
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        synchronized (batches) {
+            batches.forEach(events::addAll);
+        }
+        return events;
+    }
+
+    private List<String> savedPrincipals() {
+        List<String> principals = new ArrayList<>();
+        savedEvents().forEach(event -> principals.add(event.getPrincipal()));
+        return principals;
+    }
+
+    private long spilledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("audit.events.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static AuditEvent event(String principal) {
+        return new AuditEvent(principal, "AUTHENTICATION_SUCCESS", Collections.singletonMap("remoteAddress", "127.0.0.1"));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder value = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            value.append(c);
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,195 @@
+package org.clinic.config.audit;
+
+import org.clinic.ClinicApp;
+import org.clinic.config.ApplicationProperties;
+import org.clinic.config.ApplicationProperties.Audit.StorageLayout;
+import org.clinic.repository.PersistenceAuditEventRepository;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the storage layouts of the audit event data: one JSON column of the event, or one row per
+ * entry of {@code jhi_persistent_audit_evt_data}.
+ * <p>
+ * The comparison counts statements rather than timing them, so it does not depend on the machine; the throughputs
+ * are logged.
+ */
+@SpringBootTest(classes = ClinicApp.class, properties = "application.audit.enabled=true")
+public class AuditEventStorageLayoutIT {
+
+    private static final int EVENT_COUNT = 1000;
+
+    private static final int DATA_ENTRIES = 4;
+
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventStorageLayoutIT.class);
+
+    @Autowired
+    private AsyncAuditEventRepository auditEventRepository;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        applicationProperties.getAudit().setStorageLayout(StorageLayout.JSON);
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testJsonLayoutNeedsFewerStatements() {
+        Measure table = measure(StorageLayout.TABLE, "table-user");
+        Measure json = measure(StorageLayout.JSON, "json-user");
+
+        log.info("Table layout: {}", table);
+        log.info("JSON layout: {}", json);
+        assertThat(table.dataRows).isEqualTo(EVENT_COUNT * DATA_ENTRIES);
+        assertThat(json.dataRows).isZero();
+        // The events are inserted in batches either way, but the table layout adds one insert per data entry
+        assertThat(json.writeStatements).isLessThan(table.writeStatements);
+        // The table layout loads the data of 100 events per query, the JSON layout reads it with the events
+        assertThat(table.readStatements).isGreaterThanOrEqualTo(1 + EVENT_COUNT / 100);
+        assertThat(json.readStatements).isLessThan(table.readStatements);
+    }
+
+    @Test
+    public void testMigrationCopiesTheTableLayoutToTheJsonColumn() throws Exception {
+        applicationProperties.getAudit().setStorageLayout(StorageLayout.TABLE);
+        Map<String, Object> data = new HashMap<>();
+        data.put("remoteAddress", "127.0.0.1");
+        data.put("message", "Bad credentials");
+        auditEventRepository.add(new AuditEvent("legacy-user", "AUTHENTICATION_FAILURE", data));
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new AuditEventDataMigration().execute(database);
+            database.commit();
+        }
+
+        assertThat(jdbcTemplate.queryForList("select event_data from jhi_persistent_audit_event where principal = ?",
+            String.class, "legacy-user"))
+            .containsExactly("{\"message\":\"Bad credentials\",\"remoteAddress\":\"127.0.0.1\"}");
+        List<AuditEvent> events = auditEventRepository.find("legacy-user", null, null);
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getData()).isEqualTo(data);
+    }
+
+    @Test
+    public void testMigrationCopiesEveryPageOfEvents() throws Exception {
+        applicationProperties.getAudit().setStorageLayout(StorageLayout.TABLE);
+        for (int i = 0; i < 5; i++) {
+            auditEventRepository.add(new AuditEvent("paged-user", "AUTHENTICATION_SUCCESS",
+                Collections.singletonMap("attempt", String.valueOf(i))));
+        }
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+
+        // Two events per page, so the last page is partial
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new AuditEventDataMigration(2).execute(database);
+            database.commit();
+        }
+
+        assertThat(jdbcTemplate.queryForList("select event_data from jhi_persistent_audit_event where principal = ?",
+            String.class, "paged-user"))
+            .containsExactlyInAnyOrder("{\"attempt\":\"0\"}", "{\"attempt\":\"1\"}", "{\"attempt\":\"2\"}",
+                "{\"attempt\":\"3\"}", "{\"attempt\":\"4\"}");
+    }
+
+    private Measure measure(StorageLayout layout, String principal) {
+        applicationProperties.getAudit().setStorageLayout(layout);
+        Measure measure = new Measure();
+        long dataRowsBefore = countDataRows();
+
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Map<String, Object> data = new HashMap<>();
+            for (int entry = 0; entry < DATA_ENTRIES; entry++) {
+                data.put("entry" + entry, "value " + i);
+            }
+            auditEventRepository.add(new AuditEvent(principal, "AUTHENTICATION_SUCCESS", data));
+        }
+        assertThat(auditEventRepository.flush(TIMEOUT_MILLIS)).isTrue();
+        measure.writesPerSecond = EVENT_COUNT * 1e9 / (System.nanoTime() - start);
+        measure.writeStatements = statistics.getPrepareStatementCount();
+        measure.dataRows = countDataRows() - dataRowsBefore;
+
+        statistics.clear();
+        start = System.nanoTime();
+        List<AuditEvent> events = auditEventRepository.find(principal, null, null);
+        measure.readsPerSecond = EVENT_COUNT * 1e9 / (System.nanoTime() - start);
+        measure.readStatements = statistics.getPrepareStatementCount();
+
+        assertThat(events).hasSize(EVENT_COUNT);
+        assertThat(events).allSatisfy(event -> assertThat(event.getData()).hasSize(DATA_ENTRIES));
+        return measure;
+    }
+
+    private long countDataRows() {
+        return jdbcTemplate.queryForObject("select count(*) from jhi_persistent_audit_evt_data", Long.class);
+    }
+
+    private static final class Measure {
+
+        private double writesPerSecond;
+
+        private long writeStatements;
+
+        private long dataRows;
+
+        private double readsPerSecond;
+
+        private long readStatements;
+
+        @Override
+        public String toString() {
+            return String.format("%.0f writes/s in %d statements (%d data rows), %.0f reads/s in %d statements",
+                writesPerSecond, writeStatements, dataRows, readsPerSecond, readStatements);
+        }
+    }
+}
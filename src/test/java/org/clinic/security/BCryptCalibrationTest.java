@@ -0,0 +1,64 @@
+package org.clinic.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link BCryptCalibration}.
+ */
+public class BCryptCalibrationTest {
+
+    @Test
+    public void testCalibratedCostStaysWithinBounds() {
+        assertThat(BCryptCalibration.calibrate(0, 4, 6).getCost()).isEqualTo(4);
+        assertThat(BCryptCalibration.calibrate(60_000, 4, 6).getCost()).isEqualTo(6);
+        assertThat(BCryptCalibration.calibrate(100, 5, 5).getCost()).isEqualTo(5);
+    }
+
+    @Test
+    public void testHashesAreVersioned() {
+        PasswordEncoder passwordEncoder = BCryptCalibration.calibrate(0, 4, 4).createPasswordEncoder();
+
+        String hash = passwordEncoder.encode("password");
+
+        assertThat(hash).startsWith("{bcrypt4}$2a$04$");
+        assertThat(passwordEncoder.matches("password", hash)).isTrue();
+        assertThat(passwordEncoder.matches("other", hash)).isFalse();
+        assertThat(passwordEncoder.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    public void testOlderHashesMatchAndNeedAnUpgrade() {
+        PasswordEncoder passwordEncoder = BCryptCalibration.calibrate(0, 5, 5).createPasswordEncoder();
+        String unversionedHash = new BCryptPasswordEncoder(4).encode("password");
+        String olderCostHash = "{bcrypt4}" + unversionedHash;
+
+        assertThat(passwordEncoder.matches("password", unversionedHash)).isTrue();
+        assertThat(passwordEncoder.matches("password", olderCostHash)).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding(unversionedHash)).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding(olderCostHash)).isTrue();
+    }
+
+    @Test
+    public void testHigherCostHashesDoNotNeedAnUpgrade() {
+        PasswordEncoder passwordEncoder = BCryptCalibration.calibrate(0, 4, 4).createPasswordEncoder();
+        String unversionedHash = new BCryptPasswordEncoder(5).encode("password");
+        String higherCostHash = "{bcrypt5}" + unversionedHash;
+
+        assertThat(passwordEncoder.matches("password", higherCostHash)).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding(higherCostHash)).isFalse();
+        assertThat(passwordEncoder.upgradeEncoding("{bcrypt}" + unversionedHash)).isFalse();
+        assertThat(passwordEncoder.upgradeEncoding(unversionedHash)).isFalse();
+    }
+
+    @Test
+    public void testOtherEncodingsNeedAnUpgrade() {
+        PasswordEncoder passwordEncoder = BCryptCalibration.calibrate(0, 4, 4).createPasswordEncoder();
+
+        assertThat(passwordEncoder.upgradeEncoding("{noop}password")).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding("password")).isTrue();
+    }
+}
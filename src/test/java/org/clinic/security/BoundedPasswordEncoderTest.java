@@ -0,0 +1,127 @@
+package org.clinic.security;
+
+import org.clinic.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link BoundedPasswordEncoder}.
+ */
+public class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private MeterRegistry meterRegistry;
+
+    private BoundedPasswordEncoder passwordEncoder;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        ApplicationProperties.Security.PasswordHashing properties = new ApplicationProperties.Security.PasswordHashing();
+        properties.setThreads(1);
+        properties.setQueueCapacity(1);
+        properties.setWaitTimeoutMillis(10_000);
+        properties.setRetryAfterSeconds(2);
+        passwordEncoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(release), properties, meterRegistry);
+        callers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    public void testHashingIsDelegated() {
+        release.countDown();
+
+        assertThat(passwordEncoder.encode("password")).isEqualTo("{hashed}password");
+        assertThat(passwordEncoder.matches("password", "{hashed}password")).isTrue();
+        assertThat(passwordEncoder.matches("other", "{hashed}password")).isFalse();
+        assertThat(meterRegistry.get("password.hashing.time").tag("operation", "matches").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("password.hashing.wait").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testHashingIsRejectedWhenTheQueueIsFull() throws Exception {
+        // One hash running, one waiting: the pool is saturated
+        Future<String> running = callers.submit(() -> passwordEncoder.encode("running"));
+        Future<String> queued = callers.submit(() -> passwordEncoder.encode("queued"));
+        while (meterRegistry.get("password.hashing.queue.depth").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThatThrownBy(() -> passwordEncoder.matches("rejected", "{hashed}rejected"))
+            .isInstanceOf(PasswordHashingRejectedException.class)
+            .extracting("retryAfterSeconds").isEqualTo(2L);
+        assertThat(meterRegistry.get("password.hashing.rejected").tag("reason", "queue_full").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).isEqualTo("{hashed}running");
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo("{hashed}queued");
+    }
+
+    @Test
+    public void testHashingIsRejectedAfterTheWaitTimeout() {
+        ApplicationProperties.Security.PasswordHashing properties = new ApplicationProperties.Security.PasswordHashing();
+        properties.setThreads(1);
+        properties.setWaitTimeoutMillis(10);
+        BoundedPasswordEncoder timingOutEncoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(release), properties, new SimpleMeterRegistry());
+        try {
+            assertThatThrownBy(() -> timingOutEncoder.encode("password")).isInstanceOf(PasswordHashingRejectedException.class);
+        } finally {
+            timingOutEncoder.shutdown();
+        }
+    }
+
+    /**
+     * A fake encoder whose hashes block until released.
+     */
+    private static class BlockingPasswordEncoder implements PasswordEncoder {
+
+        private final CountDownLatch release;
+
+        BlockingPasswordEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "{hashed}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return encodedPassword.equals("{hashed}" + rawPassword);
+        }
+
+        private void await() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
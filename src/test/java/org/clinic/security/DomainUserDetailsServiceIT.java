@@ -0,0 +1,98 @@
+package org.clinic.security;
+
+import org.clinic.ClinicApp;
+import org.clinic.domain.User;
+import org.clinic.repository.UserRepository;
+import org.clinic.service.UserService;
+import org.clinic.service.dto.UserDTO;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for the caches of {@link DomainUserDetailsService}.
+ * <p>
+ * Cache evictions run after commit, so these tests must not run in a rolled-back transaction.
+ */
+@SpringBootTest(classes = ClinicApp.class)
+public class DomainUserDetailsServiceIT {
+
+    @Autowired
+    private DomainUserDetailsService domainUserDetailsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        cacheManager.getCache(UserRepository.USER_DETAILS_BY_USERNAME_CACHE).clear();
+        cacheManager.getCache(UserRepository.UNKNOWN_USERNAMES_CACHE).clear();
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+    }
+
+    @Test
+    public void cachedUserIsLoadedWithoutSql() {
+        User user = userService.save(userDTO("cached-user", "cached-password"));
+        try {
+            UserDetails first = domainUserDetailsService.loadUserByUsername("Cached-User");
+            statistics.clear();
+            UserDetails second = domainUserDetailsService.loadUserByUsername("cached-user");
+
+            assertThat(statistics.getPrepareStatementCount()).isZero();
+            assertThat(second).isNotSameAs(first);
+            assertThat(second.getUsername()).isEqualTo("cached-user");
+            assertThat(second.getPassword()).isEqualTo(first.getPassword());
+            assertThat(((AccountUserDetails) second).getAccountId()).isEqualTo(user.getId());
+        } finally {
+            userService.delete(user.getId());
+        }
+        assertThatThrownBy(() -> domainUserDetailsService.loadUserByUsername("cached-user"))
+            .isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    public void unknownUserIsCachedUntilCreated() {
+        assertThatThrownBy(() -> domainUserDetailsService.loadUserByUsername("unknown-user"))
+            .isInstanceOf(UsernameNotFoundException.class);
+        statistics.clear();
+        assertThatThrownBy(() -> domainUserDetailsService.loadUserByUsername("unknown-user"))
+            .isInstanceOf(UsernameNotFoundException.class);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        User user = userService.save(userDTO("unknown-user", "unknown-password"));
+        try {
+            assertThat(domainUserDetailsService.loadUserByUsername("unknown-user").getUsername()).isEqualTo("unknown-user");
+        } finally {
+            userService.delete(user.getId());
+        }
+    }
+
+    private static UserDTO userDTO(String username, String password) {
+        UserDTO userDTO = new UserDTO();
+        userDTO.setUsername(username);
+        userDTO.setPassword(password);
+        return userDTO;
+    }
+}
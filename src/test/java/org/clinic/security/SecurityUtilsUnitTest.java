@@ -27,6 +27,15 @@ public class SecurityUtilsUnitTest {
         assertThat(login).contains("admin");
     }
 
+    @Test
+    public void testGetCurrentUserLoginFromAuthenticatedUser() {
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(new UsernamePasswordAuthenticationToken(new AuthenticatedUser("admin", 1L), "token"));
+        SecurityContextHolder.setContext(securityContext);
+        Optional<String> login = SecurityUtils.getCurrentUserLogin();
+        assertThat(login).contains("admin");
+    }
+
     @Test
     public void testgetCurrentUserJWT() {
         SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
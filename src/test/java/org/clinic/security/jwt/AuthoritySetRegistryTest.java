@@ -0,0 +1,45 @@
+package org.clinic.security.jwt;
+
+import org.clinic.security.AuthoritiesConstants;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AuthoritySetRegistryTest {
+
+    @Test
+    public void testSameClaimReturnsSameAuthorities() {
+        AuthoritySetRegistry registry = new AuthoritySetRegistry(10);
+
+        List<GrantedAuthority> first = registry.get(AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER);
+        List<GrantedAuthority> second = registry.get(AuthoritiesConstants.ADMIN + "," + AuthoritiesConstants.USER);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        assertThatThrownBy(() -> first.add(first.get(0))).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void testEmptyClaimHasNoAuthorities() {
+        AuthoritySetRegistry registry = new AuthoritySetRegistry(10);
+
+        assertThat(registry.get("")).isEmpty();
+    }
+
+    @Test
+    public void testRegistryIsBounded() {
+        AuthoritySetRegistry registry = new AuthoritySetRegistry(1);
+        registry.get(AuthoritiesConstants.ADMIN);
+
+        List<GrantedAuthority> first = registry.get(AuthoritiesConstants.USER);
+        List<GrantedAuthority> second = registry.get(AuthoritiesConstants.USER);
+
+        assertThat(second).isNotSameAs(first).isEqualTo(first);
+        assertThat(registry.size()).isEqualTo(1);
+    }
+}
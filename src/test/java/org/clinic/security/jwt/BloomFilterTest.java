@@ -0,0 +1,72 @@
+package org.clinic.security.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link BloomFilter}.
+ */
+public class BloomFilterTest {
+
+    private static final int VALUES = 10_000;
+
+    private static final int PROBES = 100_000;
+
+    @Test
+    public void testValuesOfTheFilterAreAlwaysFound() {
+        List<String> values = randomIds(VALUES);
+        BloomFilter filter = BloomFilter.of(values, 0.01);
+
+        assertThat(filter.size()).isEqualTo(VALUES);
+        for (String value : values) {
+            assertThat(filter.mightContain(value)).isTrue();
+        }
+    }
+
+    @Test
+    public void testFalsePositivesStayNearTheTarget() {
+        BloomFilter filter = BloomFilter.of(randomIds(VALUES), 0.01);
+
+        int falsePositives = 0;
+        for (String probe : randomIds(PROBES)) {
+            if (filter.mightContain(probe)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat((double) falsePositives / PROBES).isLessThan(0.02);
+        assertThat(filter.expectedFalsePositiveProbability()).isBetween(0.005, 0.02);
+    }
+
+    @Test
+    public void testEmptyFilterContainsNothing() {
+        BloomFilter filter = BloomFilter.of(Collections.emptyList(), 0.01);
+
+        assertThat(filter.size()).isZero();
+        assertThat(filter.expectedFalsePositiveProbability()).isZero();
+        for (String probe : randomIds(1_000)) {
+            assertThat(filter.mightContain(probe)).isFalse();
+        }
+    }
+
+    @Test
+    public void testInvalidProbabilitiesAreRejected() {
+        assertThatThrownBy(() -> BloomFilter.of(Collections.emptyList(), 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BloomFilter.of(Collections.emptyList(), 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> randomIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
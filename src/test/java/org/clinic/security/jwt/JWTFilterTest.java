@@ -1,9 +1,10 @@
 package org.clinic.security.jwt;
 
+import org.clinic.config.ApplicationProperties;
+import org.clinic.repository.RevokedTokenRepository;
 import org.clinic.security.AuthoritiesConstants;
 import io.github.jhipster.config.JHipsterProperties;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,6 +20,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.util.Collections;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 public class JWTFilterTest {
 
@@ -27,12 +29,15 @@ public class JWTFilterTest {
     private JWTFilter jwtFilter;
 
     @BeforeEach
-    public void setup() {
+    public void setup() throws Exception {
         JHipsterProperties jHipsterProperties = new JHipsterProperties();
-        tokenProvider = new TokenProvider(jHipsterProperties);
-        ReflectionTestUtils.setField(tokenProvider, "key",
-            Keys.hmacShaKeyFor(Decoders.BASE64
-                .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8")));
+        jHipsterProperties.getSecurity().getAuthentication().getJwt()
+            .setBase64Secret("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        TokenRevocationList tokenRevocationList = new TokenRevocationList(mock(RevokedTokenRepository.class),
+            applicationProperties, new SimpleMeterRegistry(), Runnable::run);
+        tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties, tokenRevocationList);
+        tokenProvider.afterPropertiesSet();
 
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 60000);
         jwtFilter = new JWTFilter(tokenProvider);
@@ -1,5 +1,9 @@
 package org.clinic.security.jwt;
 
+import org.clinic.config.ApplicationProperties;
+import org.clinic.repository.RevokedTokenRepository;
+import org.clinic.security.AccountUserDetails;
+import org.clinic.security.AuthenticatedUser;
 import org.clinic.security.AuthoritiesConstants;
 
 import java.security.Key;
@@ -14,28 +18,137 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 public class TokenProviderTest {
 
     private static final long ONE_MINUTE = 60000;
 
+    private static final String BASE64_SECRET = "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+
     private Key key;
+    private TokenRevocationList tokenRevocationList;
     private TokenProvider tokenProvider;
 
     @BeforeEach
-    public void setup() {
-        tokenProvider = new TokenProvider( new JHipsterProperties());
-        key = Keys.hmacShaKeyFor(Decoders.BASE64
-            .decode("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8"));
+    public void setup() throws Exception {
+        tokenProvider = createTokenProvider(false);
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(BASE64_SECRET));
+    }
 
-        ReflectionTestUtils.setField(tokenProvider, "key", key);
-        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
+    @Test
+    public void testAuthenticateValidToken() {
+        String token = createToken("test-user", ONE_MINUTE);
+
+        Optional<Authentication> authentication = tokenProvider.authenticate(token);
+
+        assertThat(authentication).isPresent();
+        assertThat(authentication.get().getName()).isEqualTo("test-user");
+        assertThat(authentication.get().getCredentials()).isEqualTo(token);
+        assertThat(authentication.get().getAuthorities()).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.USER);
+    }
+
+    @Test
+    public void testAuthoritiesAreSharedBetweenTokens() {
+        Authentication first = tokenProvider.authenticate(createToken("test-user", ONE_MINUTE)).get();
+        Authentication second = tokenProvider.authenticate(createToken("other-user", ONE_MINUTE)).get();
+
+        assertThat(second.getAuthorities()).isSameAs(first.getAuthorities());
+        assertThat(second.getPrincipal()).isInstanceOf(AuthenticatedUser.class);
+        assertThat(((AuthenticatedUser) second.getPrincipal()).getName()).isEqualTo("other-user");
+    }
+
+    @Test
+    public void testCreateTokenCarriesTheAccountId() {
+        AccountUserDetails user = new AccountUserDetails(42L, "test-user", "",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+        String token = tokenProvider.createToken(new UsernamePasswordAuthenticationToken(user, "", user.getAuthorities()), false);
+
+        AuthenticatedUser principal = (AuthenticatedUser) tokenProvider.authenticate(token).get().getPrincipal();
+
+        assertThat(principal.getName()).isEqualTo("test-user");
+        assertThat(principal.getAccountId()).isEqualTo(42L);
+    }
+
+    @Test
+    public void testCreateTokenCarriesATokenId() {
+        Authentication authentication = createAuthentication();
+        JwtAuthentication first = (JwtAuthentication) tokenProvider.authenticate(tokenProvider.createToken(authentication, false)).get();
+        JwtAuthentication second = (JwtAuthentication) tokenProvider.authenticate(tokenProvider.createToken(authentication, false)).get();
+
+        assertThat(first.getTokenId()).isNotNull().isNotEqualTo(second.getTokenId());
+        assertThat(first.getExpiration()).isNotNull();
+    }
+
+    @Test
+    public void testRevokedTokensAreNotAuthenticated() throws Exception {
+        tokenProvider = createTokenProvider(true);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        JwtAuthentication authentication = (JwtAuthentication) tokenProvider.authenticate(token).get();
+
+        // The token is cached, and still checked for revocation
+        tokenRevocationList.revoke(authentication.getTokenId(), authentication.getExpiration());
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.authenticate(tokenProvider.createToken(createAuthentication(), false))).isPresent();
+    }
+
+    @Test
+    public void testAuthenticateInvalidToken() {
+        assertThat(tokenProvider.authenticate(createTokenWithDifferentSignature())).isEmpty();
+        assertThat(tokenProvider.authenticate(createToken("test-user", -ONE_MINUTE))).isEmpty();
+        assertThat(tokenProvider.authenticate("")).isEmpty();
+    }
+
+    @Test
+    public void testVerifiedTokensAreCached() throws Exception {
+        tokenProvider = createTokenProvider(true);
+        String token = createToken("test-user", ONE_MINUTE);
+        Authentication first = tokenProvider.authenticate(token).get();
+
+        // Signatures are no longer checked for a cached token
+        ReflectionTestUtils.setField(tokenProvider, "jwtParser", Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64
+            .decode("Xfd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8"))).build());
+        Optional<Authentication> second = tokenProvider.authenticate(token);
+
+        assertThat(second).isPresent();
+        assertThat(second.get()).isSameAs(first);
+        assertThat(second.get().getName()).isEqualTo("test-user");
+        assertThat(tokenProvider.authenticate(createToken("other-user", ONE_MINUTE))).isEmpty();
+    }
+
+    @Test
+    public void testInvalidTokensAreNotCached() throws Exception {
+        tokenProvider = createTokenProvider(true);
+        String token = createToken("test-user", ONE_MINUTE);
+        String tamperedToken = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThat(tokenProvider.authenticate(tamperedToken)).isEmpty();
+        assertThat(tokenProvider.authenticate(tamperedToken)).isEmpty();
+        assertThat(tokenProvider.authenticate(token)).isPresent();
+    }
+
+    @Test
+    public void testCachedTokensExpireWithTheToken() throws Exception {
+        tokenProvider = createTokenProvider(true);
+        // The expiration claim is truncated to the second, so this token expires in one to two seconds
+        String token = createToken("test-user", 2000);
+        assertThat(tokenProvider.authenticate(token)).isPresent();
+
+        Thread.sleep(2100);
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
     }
 
     @Test
@@ -67,6 +180,56 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testReferenceTokensResolveToTheirSession() throws Exception {
+        tokenProvider = createTokenProvider(false, true);
+        AccountUserDetails user = new AccountUserDetails(42L, "test-user", "",
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+        String token = tokenProvider.createToken(new UsernamePasswordAuthenticationToken(user, "", user.getAuthorities()), false);
+
+        assertThat(token).hasSize(32).doesNotContain(".");
+        Authentication authentication = tokenProvider.authenticate(token).get();
+        assertThat(authentication.getCredentials()).isEqualTo(token);
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.USER);
+        assertThat(((AuthenticatedUser) authentication.getPrincipal()).getAccountId()).isEqualTo(42L);
+        assertThat(((JwtAuthentication) authentication).getExpiration()).isNotNull();
+        assertThat(tokenProvider.authenticate(token).get()).isSameAs(authentication);
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+    }
+
+    @Test
+    public void testRevokedOrUnknownReferenceTokensAreRejected() throws Exception {
+        tokenProvider = createTokenProvider(false, true);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        tokenProvider.revoke((JwtAuthentication) tokenProvider.authenticate(token).get());
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.authenticate("unknown")).isEmpty();
+    }
+
+    @Test
+    public void testJwtTokensAreStillAcceptedWithReferenceTokens() throws Exception {
+        tokenProvider = createTokenProvider(false, true);
+
+        assertThat(tokenProvider.authenticate(createToken("test-user", ONE_MINUTE))).isPresent();
+        assertThat(tokenProvider.validateToken(createTokenWithDifferentSignature())).isFalse();
+    }
+
+    @Test
+    public void testReferenceTokensAreResolvedWithoutVerifyingAnySignature() throws Exception {
+        tokenProvider = createTokenProvider(false, true);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        JwtParser jwtParser = mock(JwtParser.class);
+        ReflectionTestUtils.setField(tokenProvider, "jwtParser", jwtParser);
+
+        assertThat(tokenProvider.authenticate(token)).isPresent();
+        assertThat(tokenProvider.validateToken(token)).isTrue();
+        verifyNoInteractions(jwtParser);
+    }
+
     @Test
     public void testReturnFalseWhenJWTisUnsupported() {
         String unsupportedToken = createUnsupportedToken();
@@ -83,6 +246,33 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    private TokenProvider createTokenProvider(boolean cacheVerifiedTokens) throws Exception {
+        return createTokenProvider(cacheVerifiedTokens, false);
+    }
+
+    private TokenProvider createTokenProvider(boolean cacheVerifiedTokens, boolean referenceTokens) throws Exception {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getVerifiedTokens().setEnabled(cacheVerifiedTokens);
+        applicationProperties.getSecurity().getReferenceToken().setEnabled(referenceTokens);
+        tokenRevocationList = new TokenRevocationList(mock(RevokedTokenRepository.class), applicationProperties,
+            new SimpleMeterRegistry(), Runnable::run);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties, tokenRevocationList);
+        tokenProvider.afterPropertiesSet();
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
+        return tokenProvider;
+    }
+
+    private String createToken(String subject, long validityInMilliseconds) {
+        return Jwts.builder()
+            .setSubject(subject)
+            .claim("auth", AuthoritiesConstants.USER)
+            .signWith(key, SignatureAlgorithm.HS512)
+            .setExpiration(new Date(new Date().getTime() + validityInMilliseconds))
+            .compact();
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
@@ -0,0 +1,134 @@
+package org.clinic.security.jwt;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.domain.RevokedToken;
+import org.clinic.repository.RevokedTokenRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link TokenRevocationList}.
+ */
+public class TokenRevocationListTest {
+
+    private final Instant expiresAt = Instant.now().plusSeconds(900);
+
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private TokenRevocationList tokenRevocationList;
+
+    @BeforeEach
+    public void setup() {
+        revokedTokenRepository = mock(RevokedTokenRepository.class);
+        when(revokedTokenRepository.save(any(RevokedToken.class))).then(invocation -> invocation.getArgument(0));
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getTokenRevocation().setRecentCapacity(3);
+        meterRegistry = new SimpleMeterRegistry();
+        tokenRevocationList = new TokenRevocationList(revokedTokenRepository, applicationProperties, meterRegistry, Runnable::run);
+    }
+
+    @Test
+    public void testTokensAreNotRevokedWithoutReadingTheTable() {
+        assertThat(tokenRevocationList.isRevoked(UUID.randomUUID().toString())).isFalse();
+        assertThat(tokenRevocationList.isRevoked(null)).isFalse();
+
+        verify(revokedTokenRepository, never()).existsById(anyString());
+        assertThat(checks("not_revoked")).isEqualTo(1);
+    }
+
+    @Test
+    public void testRecentRevocationsAreFoundWithoutReadingTheTable() {
+        String tokenId = UUID.randomUUID().toString();
+        tokenRevocationList.revoke(tokenId, expiresAt);
+
+        assertThat(tokenRevocationList.isRevoked(tokenId)).isTrue();
+        verify(revokedTokenRepository, never()).existsById(anyString());
+        assertThat(checks("revoked")).isEqualTo(1);
+        assertThat(meterRegistry.get("token.revocation.recent").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRebuildMovesRevocationsToTheFilter() {
+        String tokenId = UUID.randomUUID().toString();
+        tokenRevocationList.revoke(tokenId, expiresAt);
+        when(revokedTokenRepository.findAllJtiByExpiresAtAfter(any(Instant.class))).thenReturn(Arrays.asList(tokenId));
+        when(revokedTokenRepository.existsById(tokenId)).thenReturn(true);
+
+        tokenRevocationList.rebuild();
+
+        assertThat(meterRegistry.get("token.revocation.recent").gauge().value()).isZero();
+        assertThat(meterRegistry.get("token.revocation.filter.size").gauge().value()).isEqualTo(1);
+        assertThat(tokenRevocationList.isRevoked(tokenId)).isTrue();
+        verify(revokedTokenRepository).existsById(tokenId);
+    }
+
+    @Test
+    public void testFalsePositivesAreConfirmedInTheTable() {
+        List<String> tokenIds = randomIds(100);
+        when(revokedTokenRepository.findAllJtiByExpiresAtAfter(any(Instant.class))).thenReturn(tokenIds);
+        tokenRevocationList.rebuild();
+
+        // With a 1% false positive probability, some of these are matched by the filter without being revoked
+        int probes = 10_000;
+        for (String probe : randomIds(probes)) {
+            assertThat(tokenRevocationList.isRevoked(probe)).isFalse();
+        }
+
+        double falsePositives = checks("false_positive");
+        assertThat(falsePositives).isPositive().isLessThan(probes * 0.02);
+        assertThat(checks("not_revoked")).isEqualTo(probes - falsePositives);
+        verify(revokedTokenRepository, times((int) falsePositives)).existsById(anyString());
+    }
+
+    @Test
+    public void testRecentCapacityTriggersARebuild() {
+        List<String> tokenIds = new ArrayList<>();
+        when(revokedTokenRepository.findAllJtiByExpiresAtAfter(any(Instant.class))).then(invocation -> new ArrayList<>(tokenIds));
+        for (String tokenId : randomIds(3)) {
+            tokenIds.add(tokenId);
+            tokenRevocationList.revoke(tokenId, expiresAt);
+        }
+
+        verify(revokedTokenRepository).findAllJtiByExpiresAtAfter(any(Instant.class));
+        assertThat(meterRegistry.get("token.revocation.filter.size").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("token.revocation.recent").gauge().value()).isZero();
+        for (String tokenId : tokenIds) {
+            when(revokedTokenRepository.existsById(tokenId)).thenReturn(true);
+            assertThat(tokenRevocationList.isRevoked(tokenId)).isTrue();
+        }
+    }
+
+    private double checks(String result) {
+        return meterRegistry.get("token.revocation.checks").tag("result", result).counter().count();
+    }
+
+    private static List<String> randomIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
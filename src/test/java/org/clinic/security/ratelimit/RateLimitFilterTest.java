@@ -0,0 +1,138 @@
+package org.clinic.security.ratelimit;
+
+import org.clinic.config.ApplicationProperties;
+import org.clinic.security.jwt.JWTFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link RateLimitFilter}.
+ */
+public class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final List<Exception> resolvedExceptions = new ArrayList<>();
+
+    private MeterRegistry meterRegistry;
+
+    private RateLimitFilter rateLimitFilter;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties.Security.RateLimit properties = new ApplicationProperties.Security.RateLimit();
+        properties.getRules().add(rule("/api/authenticate", 1));
+        properties.getRules().add(rule("/api/**", 2));
+        meterRegistry = new SimpleMeterRegistry();
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(100, Duration.ofMinutes(10), clock::get);
+        rateLimitFilter = new RateLimitFilter(properties, rateLimiter, (request, response, handler, ex) -> {
+            resolvedExceptions.add(ex);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            return new ModelAndView();
+        }, meterRegistry);
+    }
+
+    @Test
+    public void testRequestsWithinTheLimitPass() throws Exception {
+        MockHttpServletResponse response = perform(request("/api/clinics", "10.0.0.1", null));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(RateLimitFilter.LIMIT_HEADER)).isEqualTo("2");
+        assertThat(response.getHeader(RateLimitFilter.REMAINING_HEADER)).isEqualTo("1");
+        assertThat(response.getHeader(RateLimitFilter.RESET_HEADER)).isEqualTo("1");
+    }
+
+    @Test
+    public void testRequestsOverTheLimitAreRejected() throws Exception {
+        perform(request("/api/authenticate", "10.0.0.1", null));
+        MockHttpServletResponse response = perform(request("/api/authenticate", "10.0.0.1", null));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(response.getHeader(RateLimitFilter.REMAINING_HEADER)).isEqualTo("0");
+        assertThat(resolvedExceptions).hasSize(1);
+        assertThat(resolvedExceptions.get(0))
+            .isInstanceOf(RateLimitExceededException.class)
+            .extracting("retryAfterSeconds").isEqualTo(1L);
+        assertThat(meterRegistry.get("rate.limit.rejected").tag("path", "/api/authenticate").tag("key", "ip")
+            .counter().count()).isEqualTo(1);
+
+        // Other rules and other addresses have their own buckets
+        assertThat(perform(request("/api/clinics", "10.0.0.1", null)).getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(perform(request("/api/authenticate", "10.0.0.2", null)).getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    public void testBearerTokensAreLimitedAcrossAddresses() throws Exception {
+        perform(request("/api/clinics", "10.0.0.1", "token"));
+        perform(request("/api/clinics", "10.0.0.2", "token"));
+        MockHttpServletResponse response = perform(request("/api/clinics", "10.0.0.3", "token"));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(meterRegistry.get("rate.limit.rejected").tag("path", "/api/**").tag("key", "token")
+            .counter().count()).isEqualTo(1);
+        assertThat(perform(request("/api/clinics", "10.0.0.3", "other-token")).getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    public void testBearerTokensAreKeyedByDigest() throws Exception {
+        StringBuilder longToken = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longToken.append("token");
+        }
+
+        assertThat(RateLimitFilter.digest(longToken.toString())).hasSize(43);
+        assertThat(RateLimitFilter.digest("token")).hasSize(43).isNotEqualTo(RateLimitFilter.digest("other-token"));
+
+        perform(request("/api/clinics", "10.0.0.1", longToken.toString()));
+        perform(request("/api/clinics", "10.0.0.2", longToken.toString()));
+        assertThat(perform(request("/api/clinics", "10.0.0.3", longToken.toString())).getStatus())
+            .isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    public void testUnmatchedRequestsAreNotLimited() throws Exception {
+        MockHttpServletResponse response = perform(request("/management/health", "10.0.0.1", null));
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(RateLimitFilter.LIMIT_HEADER)).isNull();
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        rateLimitFilter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String path, String remoteAddr, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(remoteAddr);
+        if (token != null) {
+            request.addHeader(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + token);
+        }
+        return request;
+    }
+
+    private static ApplicationProperties.Security.RateLimit.Rule rule(String path, long capacity) {
+        ApplicationProperties.Security.RateLimit.Rule rule = new ApplicationProperties.Security.RateLimit.Rule();
+        rule.setPath(path);
+        rule.setCapacity(capacity);
+        rule.setRefillPerSecond(1);
+        return rule;
+    }
+}
@@ -0,0 +1,142 @@
+package org.clinic.security.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link TokenBucketRateLimiter}.
+ */
+public class TokenBucketRateLimiterTest {
+
+    private static final int THREADS = 64;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private TokenBucketRateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setup() {
+        rateLimiter = new TokenBucketRateLimiter(1000, Duration.ofMinutes(10), clock::get);
+    }
+
+    @Test
+    public void testBurstUpToTheCapacity() {
+        TokenBucketRateLimiter.Limit limit = TokenBucketRateLimiter.Limit.of(3, 1);
+
+        assertThat(rateLimiter.tryConsume("client", limit).getRemaining()).isEqualTo(2);
+        assertThat(rateLimiter.tryConsume("client", limit).getRemaining()).isEqualTo(1);
+        RateLimitProbe last = rateLimiter.tryConsume("client", limit);
+        assertThat(last.isConsumed()).isTrue();
+        assertThat(last.getRemaining()).isZero();
+        assertThat(last.getResetSeconds()).isEqualTo(3);
+
+        RateLimitProbe rejected = rateLimiter.tryConsume("client", limit);
+        assertThat(rejected.isConsumed()).isFalse();
+        assertThat(rejected.getLimit()).isEqualTo(3);
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(1);
+        assertThat(rejected.getResetSeconds()).isEqualTo(3);
+    }
+
+    @Test
+    public void testBucketsRefillOverTime() {
+        TokenBucketRateLimiter.Limit limit = TokenBucketRateLimiter.Limit.of(2, 4);
+        rateLimiter.tryConsume("client", limit);
+        rateLimiter.tryConsume("client", limit);
+        assertThat(rateLimiter.tryConsume("client", limit).isConsumed()).isFalse();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertThat(rateLimiter.tryConsume("client", limit).isConsumed()).isTrue();
+        assertThat(rateLimiter.tryConsume("client", limit).isConsumed()).isFalse();
+
+        // Idle time does not fill the bucket past its capacity
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertThat(rateLimiter.tryConsume("client", limit).getRemaining()).isEqualTo(1);
+        assertThat(rateLimiter.tryConsume("client", limit).getRemaining()).isZero();
+        assertThat(rateLimiter.tryConsume("client", limit).isConsumed()).isFalse();
+    }
+
+    @Test
+    public void testClientsHaveTheirOwnBuckets() {
+        TokenBucketRateLimiter.Limit limit = TokenBucketRateLimiter.Limit.of(1, 1);
+
+        assertThat(rateLimiter.tryConsume("first", limit).isConsumed()).isTrue();
+        assertThat(rateLimiter.tryConsume("first", limit).isConsumed()).isFalse();
+        assertThat(rateLimiter.tryConsume("second", limit).isConsumed()).isTrue();
+        assertThat(rateLimiter.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidLimitsAreRejected() {
+        assertThatThrownBy(() -> TokenBucketRateLimiter.Limit.of(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TokenBucketRateLimiter.Limit.of(1, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TokenBucketRateLimiter.Limit.of(Long.MAX_VALUE, 0.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testConcurrentClientsGetExactlyTheCapacityWithoutBlocking() throws Exception {
+        TokenBucketRateLimiter.Limit limit = TokenBucketRateLimiter.Limit.of(10_000, 1);
+        String[] keys = {"first", "second", "third", "fourth"};
+        for (String key : keys) {
+            // Also loads every class used, so that no thread blocks on class initialization
+            rateLimiter.tryConsume(key, limit);
+        }
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder[] consumed = new LongAdder[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            consumed[i] = new LongAdder();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Long>> contentions = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                contentions.add(executor.submit(() -> {
+                    start.await();
+                    long threadId = Thread.currentThread().getId();
+                    ThreadInfo before = threadMXBean.getThreadInfo(threadId);
+                    for (int i = 0; i < 1_000; i++) {
+                        int key = (thread + i) % keys.length;
+                        if (rateLimiter.tryConsume(keys[key], limit).isConsumed()) {
+                            consumed[key].increment();
+                        }
+                    }
+                    ThreadInfo after = threadMXBean.getThreadInfo(threadId);
+                    return after.getBlockedCount() - before.getBlockedCount()
+                        + after.getWaitedCount() - before.getWaitedCount();
+                }));
+            }
+            start.countDown();
+
+            // 64 000 attempts over 4 buckets of 10 000 tokens, with the clock stopped: exactly the capacity is used
+            for (Future<Long> contention : contentions) {
+                assertThat(contention.get(30, TimeUnit.SECONDS)).isZero();
+            }
+            for (LongAdder keyConsumed : consumed) {
+                assertThat(keyConsumed.sum()).isEqualTo(10_000 - 1);
+            }
+            for (String key : keys) {
+                assertThat(rateLimiter.tryConsume(key, limit).isConsumed()).isFalse();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.clinic.service;
+
+import org.clinic.ClinicApp;
+import org.clinic.domain.Clinic;
+import org.clinic.repository.ClinicRepository;
+import org.clinic.service.dto.ClinicDTO;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link ClinicService}.
+ */
+@SpringBootTest(classes = ClinicApp.class)
+public class ClinicServiceIT {
+
+    private static final int CALLERS = 1000;
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @Autowired
+    private ClinicRepository clinicRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private ExecutorService executor;
+
+    private Clinic clinic;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+        // Committed, so the callers' own transactions see it
+        clinic = clinicRepository.saveAndFlush(new Clinic().name("AAAAAAAAAA"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+        clinicService.delete(clinic.getId());
+    }
+
+    @Test
+    public void testConcurrentFindOneOfTheSameIdIssuesOneQuery() throws Exception {
+        // Neither the service cache nor the second-level cache may answer the first load
+        entityManagerFactory.getCache().evict(Clinic.class, clinic.getId());
+        cacheManager.getCache(ClinicRepository.CLINICS_BY_ID_CACHE).evict(clinic.getId());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<ClinicDTO>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return clinicService.findOne(clinic.getId());
+            }));
+        }
+        start.countDown();
+
+        for (Future<Optional<ClinicDTO>> result : results) {
+            assertThat(result.get(30, TimeUnit.SECONDS)).hasValueSatisfying(clinicDTO ->
+                assertThat(clinicDTO.getName()).isEqualTo("AAAAAAAAAA"));
+        }
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
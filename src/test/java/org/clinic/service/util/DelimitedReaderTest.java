@@ -0,0 +1,41 @@
+package org.clinic.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link DelimitedReader}.
+ */
+public class DelimitedReaderTest {
+
+    @Test
+    public void testRecordsAreSplitOnTheDelimiter() throws Exception {
+        DelimitedReader reader = new DelimitedReader(new StringReader("id;username\n1;RSS\n\n2;;\n"), ';');
+
+        assertThat(reader.next()).containsExactly("id", "username");
+        assertThat(reader.next()).containsExactly("1", "RSS");
+        assertThat(reader.next()).containsExactly("2", "", "");
+        assertThat(reader.getLineNumber()).isEqualTo(4);
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    public void testQuotedFieldsHoldDelimitersAndQuotes() throws Exception {
+        DelimitedReader reader = new DelimitedReader(new StringReader("\"a;b\";\"say \"\"hi\"\"\";c\"d\n"), ';');
+
+        assertThat(reader.next()).isEqualTo(Arrays.asList("a;b", "say \"hi\"", "c\"d"));
+    }
+
+    @Test
+    public void testUnclosedQuotesAreRejectedLineByLine() throws Exception {
+        DelimitedReader reader = new DelimitedReader(new StringReader("\"open;field\nnext;line\n"), ';');
+
+        assertThatThrownBy(reader::next).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("line 1");
+        assertThat(reader.next()).containsExactly("next", "line");
+    }
+}
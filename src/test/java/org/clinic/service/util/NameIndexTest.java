@@ -0,0 +1,107 @@
+package org.clinic.service.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NameIndexTest {
+
+    private NameIndex index;
+
+    @BeforeEach
+    public void setup() {
+        index = new NameIndex();
+    }
+
+    @Test
+    public void testSearchIgnoresCaseAndDiacritics() {
+        index.put(1L, "Clínica São José");
+
+        assertThat(index.search("SAO JOSE", 10)).extracting(NameIndex.Entry::getName).containsExactly("Clínica São José");
+        assertThat(index.search("clinica", 10)).extracting(NameIndex.Entry::getId).containsExactly(1L);
+    }
+
+    @Test
+    public void testMatchesAreRanked() {
+        index.put(1L, "North Dental Care");
+        index.put(2L, "Dental Center");
+        index.put(3L, "Dental");
+        index.put(4L, "Maxidental");
+        index.put(5L, "Dental Surgery and Implants");
+
+        assertThat(index.search("dental", 10)).extracting(NameIndex.Entry::getId).containsExactly(3L, 2L, 5L, 1L, 4L);
+        assertThat(index.search("dental", 2)).extracting(NameIndex.Entry::getId).containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void testShortQueriesMatchPrefixes() {
+        index.put(1L, "Bayside Clinic");
+        index.put(2L, "Abbey Clinic");
+        index.put(3L, "Ábaco Health");
+
+        assertThat(index.search("ab", 10)).extracting(NameIndex.Entry::getId).containsExactly(3L, 2L);
+        assertThat(index.search("b", 10)).extracting(NameIndex.Entry::getId).containsExactly(1L);
+    }
+
+    @Test
+    public void testUpdatesReplaceTheIndexedName() {
+        index.put(1L, "Old Town Clinic");
+        index.put(1L, "Riverside Clinic");
+
+        assertThat(index.search("old town", 10)).isEmpty();
+        assertThat(index.search("ol", 10)).isEmpty();
+        assertThat(index.search("riverside", 10)).extracting(NameIndex.Entry::getName).containsExactly("Riverside Clinic");
+        assertThat(index.search("clinic", 10)).hasSize(1);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRemovedNamesAreNotFound() {
+        index.put(1L, "Hillside Clinic");
+        index.put(2L, "Lakeside Clinic");
+        index.remove(1L);
+        index.put(2L, null);
+
+        assertThat(index.search("side", 10)).isEmpty();
+        assertThat(index.search("hi", 10)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    public void testCandidatesAreTheIdsPostedUnderEveryTrigram() {
+        for (long id = 1; id <= 1000; id++) {
+            index.put(id, "Clinic " + id);
+        }
+        index.put(1001L, "Clinica Lagoa");
+        index.put(1002L, "Lagoa Dental");
+
+        assertThat(index.candidates("clinic")).hasSize(1001);
+        assertThat(index.candidates("clinica lagoa")).containsExactly(1001L);
+        assertThat(index.candidates("lagoa")).containsExactly(1001L, 1002L);
+        assertThat(index.candidates("lagoa clinic")).isEmpty();
+        assertThat(index.search("lagoa", 10)).extracting(NameIndex.Entry::getId).containsExactly(1002L, 1001L);
+    }
+
+    @Test
+    public void testIdsAddedOutOfOrderAreKeptSorted() {
+        index.put(30L, "Harbour Clinic");
+        index.put(10L, "Harbour View");
+        index.put(20L, "Harbour Dental");
+        index.put(40L, "Harbour Care");
+        index.remove(20L);
+        index.put(25L, "Harbour Vets");
+
+        assertThat(index.candidates("harbour")).containsExactly(10L, 25L, 30L, 40L);
+        assertThat(index.search("harbour v", 10)).extracting(NameIndex.Entry::getId).containsExactly(25L, 10L);
+    }
+
+    @Test
+    public void testBlankOrUnknownQueriesMatchNothing() {
+        index.put(1L, "Hillside Clinic");
+
+        assertThat(index.search("  ", 10)).isEmpty();
+        assertThat(index.search("xyz", 10)).isEmpty();
+        assertThat(index.search("hillside clinics", 10)).isEmpty();
+    }
+}
@@ -0,0 +1,93 @@
+package org.clinic.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link RingBuffer}.
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testCapacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new RingBuffer<>(1).capacity()).isEqualTo(2);
+        assertThat(new RingBuffer<>(1000).capacity()).isEqualTo(1024);
+        assertThat(new RingBuffer<>(1024).capacity()).isEqualTo(1024);
+        assertThatThrownBy(() -> new RingBuffer<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testElementsAreRemovedInOrder() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertThat(buffer.offer(i)).isTrue();
+            }
+            assertThat(buffer.offer(4)).isFalse();
+            assertThat(buffer.size()).isEqualTo(4);
+
+            List<Integer> drained = new ArrayList<>();
+            assertThat(buffer.drainTo(drained, 3)).isEqualTo(3);
+            assertThat(buffer.poll()).isEqualTo(3);
+            assertThat(drained).containsExactly(0, 1, 2);
+            assertThat(buffer.poll()).isNull();
+            assertThat(buffer.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 100_000;
+        RingBuffer<Integer> buffer = new RingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int first = p * perProducer;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < first + perProducer; i++) {
+                        while (!buffer.offer(i)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+
+            BitSet seen = new BitSet(producers * perProducer);
+            int[] last = new int[producers];
+            List<Integer> batch = new ArrayList<>();
+            int received = 0;
+            while (received < producers * perProducer) {
+                batch.clear();
+                received += buffer.drainTo(batch, 32);
+                for (int value : batch) {
+                    assertThat(seen.get(value)).isFalse();
+                    seen.set(value);
+                    // Each producer's elements come out in the order it added them
+                    int producer = value / perProducer;
+                    assertThat(value).isGreaterThanOrEqualTo(last[producer]);
+                    last[producer] = value;
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertThat(seen.cardinality()).isEqualTo(producers * perProducer);
+            assertThat(buffer.isEmpty()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.clinic.service.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 1000;
+
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLoadsOfTheSameKeyExecuteOnce() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test", 10_000, meterRegistry);
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.load(1L, () -> {
+                queries.incrementAndGet();
+                await(release);
+                return "clinic";
+            })));
+        }
+        // Hold the load until every other caller has joined it
+        while (coalesced() < CALLERS - 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("clinic");
+        }
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(count("executed")).isEqualTo(1);
+        assertThat(coalesced()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    public void testFailureIsPropagatedToWaitingCallers() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test", 10_000, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("database down");
+
+        Future<String> leader = executor.submit(() -> singleFlight.load(1L, () -> {
+            await(release);
+            throw failure;
+        }));
+        while (count("executed") < 1) {
+            Thread.sleep(1);
+        }
+        Future<String> follower = executor.submit(() -> singleFlight.load(1L, () -> "unexpected"));
+        while (coalesced() < 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+        assertThatThrownBy(() -> follower.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCause(failure);
+    }
+
+    @Test
+    public void testWaitingCallerTimesOut() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test", 10, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.load(1L, () -> {
+            await(release);
+            return "clinic";
+        }));
+        while (count("executed") < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThatThrownBy(() -> singleFlight.load(1L, () -> "unexpected")).isInstanceOf(QueryTimeoutException.class);
+        assertThat(count("timeout")).isEqualTo(1);
+        release.countDown();
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("clinic");
+    }
+
+    @Test
+    public void testSequentialLoadsAreNotCoalesced() {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test", 10_000, meterRegistry);
+        AtomicInteger queries = new AtomicInteger();
+
+        singleFlight.load(1L, () -> "clinic" + queries.incrementAndGet());
+        String second = singleFlight.load(1L, () -> "clinic" + queries.incrementAndGet());
+
+        assertThat(second).isEqualTo("clinic2");
+        assertThat(count("executed")).isEqualTo(2);
+        assertThat(coalesced()).isZero();
+    }
+
+    private double coalesced() {
+        return count("coalesced");
+    }
+
+    private double count(String result) {
+        return meterRegistry.get(SingleFlight.METRIC_NAME).tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
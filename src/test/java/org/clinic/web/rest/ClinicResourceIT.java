@@ -6,21 +6,34 @@ import org.clinic.repository.ClinicRepository;
 import org.clinic.service.ClinicService;
 import org.clinic.service.dto.ClinicDTO;
 import org.clinic.service.mapper.ClinicMapper;
+import org.clinic.web.rest.util.KeysetPaginationUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -47,6 +60,12 @@ public class ClinicResourceIT {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private MockMvc restClinicMockMvc;
 
@@ -98,6 +117,71 @@ public class ClinicResourceIT {
         assertThat(testClinic.getName()).isEqualTo(DEFAULT_NAME);
     }
 
+    @Test
+    @Transactional
+    public void bulkSaveClinics() throws Exception {
+        // Initialize the database
+        clinicRepository.saveAndFlush(clinic);
+        int databaseSizeBeforeCreate = clinicRepository.findAll().size();
+
+        ClinicDTO newClinic = clinicMapper.toDto(createUpdatedEntity(em));
+        ClinicDTO updatedClinic = clinicMapper.toDto(createUpdatedEntity(em));
+        updatedClinic.setId(clinic.getId());
+        ClinicDTO missingClinic = clinicMapper.toDto(createUpdatedEntity(em));
+        missingClinic.setId(Long.MAX_VALUE);
+
+        restClinicMockMvc.perform(post("/api/clinics/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(newClinic, updatedClinic, missingClinic))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(1))
+            .andExpect(jsonPath("$.updated").value(1))
+            .andExpect(jsonPath("$.failed").value(1))
+            .andExpect(jsonPath("$.items.[0].status").value("CREATED"))
+            .andExpect(jsonPath("$.items.[1].status").value("UPDATED"))
+            .andExpect(jsonPath("$.items.[1].id").value(clinic.getId().intValue()))
+            .andExpect(jsonPath("$.items.[2].status").value("FAILED"))
+            .andExpect(jsonPath("$.items.[2].index").value(2));
+
+        // Validate the Clinics in the database
+        em.flush();
+        em.clear();
+        assertThat(clinicRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+        assertThat(clinicRepository.findById(clinic.getId()).get().getName()).isEqualTo(UPDATED_NAME);
+    }
+
+    @Test
+    @Transactional
+    public void bulkSaveClinicsAsNdjson() throws Exception {
+        int databaseSizeBeforeCreate = clinicRepository.findAll().size();
+
+        String body = "{\"name\":\"" + DEFAULT_NAME + "\"}\n{\"name\":\"" + UPDATED_NAME + "\"}\n";
+        restClinicMockMvc.perform(post("/api/clinics/bulk")
+            .contentType("application/x-ndjson")
+            .content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(2))
+            .andExpect(jsonPath("$.error").isEmpty());
+
+        assertThat(clinicRepository.findAll()).hasSize(databaseSizeBeforeCreate + 2);
+    }
+
+    @Test
+    @Transactional
+    public void bulkSaveClinicsWithMalformedNdjson() throws Exception {
+        int databaseSizeBeforeCreate = clinicRepository.findAll().size();
+
+        String body = "{\"name\":\"" + DEFAULT_NAME + "\"}\n{\"name\":\n";
+        restClinicMockMvc.perform(post("/api/clinics/bulk")
+            .contentType("application/x-ndjson")
+            .content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(1))
+            .andExpect(jsonPath("$.error").value("Malformed input after item 1"));
+
+        assertThat(clinicRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
     @Test
     @Transactional
     public void createClinicWithExistingId() throws Exception {
@@ -133,6 +217,125 @@ public class ClinicResourceIT {
             .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)));
     }
     
+    @Test
+    @Transactional
+    public void getAllClinicsWithCursor() throws Exception {
+        // Initialize the database
+        Clinic first = clinicRepository.saveAndFlush(createEntity(em));
+        Clinic second = clinicRepository.saveAndFlush(createEntity(em));
+        Clinic third = clinicRepository.saveAndFlush(createEntity(em));
+
+        // Start right before the clinics of this test, so that pre-existing rows do not interfere
+        String cursor = KeysetPaginationUtil.encodeCursor(first.getId() - 1);
+        MvcResult result = restClinicMockMvc.perform(get("/api/clinics?size=2&cursor={cursor}", cursor))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.LINK))
+            .andExpect(header().exists(KeysetPaginationUtil.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(first.getId().intValue()))
+            .andExpect(jsonPath("$.[1].id").value(second.getId().intValue()))
+            .andReturn();
+
+        // Follow the cursor to the last page
+        String nextCursor = result.getResponse().getHeader(KeysetPaginationUtil.NEXT_CURSOR_HEADER);
+        restClinicMockMvc.perform(get("/api/clinics?size=2&cursor={cursor}", nextCursor))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(KeysetPaginationUtil.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(third.getId().intValue()));
+    }
+
+    @Test
+    @Transactional
+    public void getAllClinicsWithInvalidCursor() throws Exception {
+        restClinicMockMvc.perform(get("/api/clinics?cursor=not-a-cursor"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getClinicsById() throws Exception {
+        // Initialize the database
+        Clinic first = clinicRepository.saveAndFlush(createEntity(em));
+        Clinic second = clinicRepository.saveAndFlush(createUpdatedEntity(em));
+
+        // Get the clinics in the requested order, reporting the missing id
+        restClinicMockMvc.perform(get("/api/clinics?ids={ids}", second.getId() + "," + Long.MAX_VALUE + "," + first.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.clinics.length()").value(2))
+            .andExpect(jsonPath("$.clinics.[0].id").value(second.getId().intValue()))
+            .andExpect(jsonPath("$.clinics.[0].name").value(UPDATED_NAME))
+            .andExpect(jsonPath("$.clinics.[1].id").value(first.getId().intValue()))
+            .andExpect(jsonPath("$.missingIds").value(hasItem(Long.MAX_VALUE)));
+    }
+
+    @Test
+    @Transactional
+    public void getClinicsByIdInBody() throws Exception {
+        // Initialize the database
+        Clinic first = clinicRepository.saveAndFlush(createEntity(em));
+
+        restClinicMockMvc.perform(post("/api/clinics/_batch-get")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(first.getId(), first.getId()))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.clinics.length()").value(1))
+            .andExpect(jsonPath("$.clinics.[0].id").value(first.getId().intValue()))
+            .andExpect(jsonPath("$.missingIds").isEmpty());
+    }
+
+    @Test
+    public void exportClinics() throws Exception {
+        // The export runs on an async thread in its own transaction, so the data must be committed
+        List<Clinic> clinics = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            clinics.add(clinicRepository.saveAndFlush(createEntity(em)));
+        }
+        try {
+            String[] lines = export();
+            assertThat(lines).hasSize((int) clinicRepository.count());
+            for (Clinic exported : clinics) {
+                assertThat(lines).contains("{\"id\":" + exported.getId() + ",\"name\":\"" + DEFAULT_NAME + "\"}");
+            }
+        } finally {
+            clinicRepository.deleteAll(clinics);
+        }
+    }
+
+    @Test
+    public void exportClinicsOnePerLineWhenOutputIsIndented() throws Exception {
+        // The dev profile indents the output of the shared mapper, which must not spread a clinic over several lines
+        List<Clinic> clinics = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            clinics.add(clinicRepository.saveAndFlush(createEntity(em)));
+        }
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        try {
+            String[] lines = export();
+            assertThat(lines).hasSize((int) clinicRepository.count());
+            List<Long> ids = new ArrayList<>();
+            for (String line : lines) {
+                ids.add(objectMapper.readValue(line, ClinicDTO.class).getId());
+            }
+            assertThat(ids).containsAll(clinics.stream().map(Clinic::getId).collect(Collectors.toList()));
+        } finally {
+            objectMapper.disable(SerializationFeature.INDENT_OUTPUT);
+            clinicRepository.deleteAll(clinics);
+        }
+    }
+
+    private String[] export() throws Exception {
+        MvcResult result = restClinicMockMvc.perform(get("/api/clinics/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = restClinicMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString();
+        return body.split("\n");
+    }
+
     @Test
     @Transactional
     public void getClinic() throws Exception {
@@ -146,6 +349,76 @@ public class ClinicResourceIT {
             .andExpect(jsonPath("$.id").value(clinic.getId().intValue()))
             .andExpect(jsonPath("$.name").value(DEFAULT_NAME));
     }
+    @Test
+    public void getClinicIsCachedUntilUpdated() throws Exception {
+        // Cache evictions are applied on commit, so this test must not run in a rolled-back transaction
+        clinicRepository.saveAndFlush(clinic);
+        try {
+            restClinicMockMvc.perform(get("/api/clinics/{id}", clinic.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value(DEFAULT_NAME));
+
+            // Update the database behind the service: the cached value is still served
+            Clinic updatedClinic = clinicRepository.findById(clinic.getId()).get();
+            clinicRepository.saveAndFlush(updatedClinic.name(UPDATED_NAME));
+            restClinicMockMvc.perform(get("/api/clinics/{id}", clinic.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value(DEFAULT_NAME));
+
+            // Updating through the API evicts the cached value
+            ClinicDTO clinicDTO = clinicMapper.toDto(updatedClinic);
+            restClinicMockMvc.perform(put("/api/clinics")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(clinicDTO)))
+                .andExpect(status().isOk());
+            restClinicMockMvc.perform(get("/api/clinics/{id}", clinic.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value(UPDATED_NAME));
+        } finally {
+            restClinicMockMvc.perform(delete("/api/clinics/{id}", clinic.getId()))
+                .andExpect(status().isNoContent());
+        }
+        restClinicMockMvc.perform(get("/api/clinics/{id}", clinic.getId()))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getClinicReturnsACopyOfTheCachedClinic() throws Exception {
+        // Cache evictions are applied on commit, so this test must not run in a rolled-back transaction
+        clinicRepository.saveAndFlush(clinic);
+        try {
+            ClinicDTO first = clinicService.findOne(clinic.getId()).get();
+            first.setName(UPDATED_NAME);
+
+            assertThat(clinicService.findOne(clinic.getId()).get().getName()).isEqualTo(DEFAULT_NAME);
+            restClinicMockMvc.perform(get("/api/clinics/{id}", clinic.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value(DEFAULT_NAME));
+        } finally {
+            clinicService.delete(clinic.getId());
+        }
+    }
+
+    @Test
+    public void searchClinics() throws Exception {
+        // The search index is updated on commit, so this test must not run in a rolled-back transaction
+        ClinicDTO clinicDTO = new ClinicDTO();
+        clinicDTO.setName("Clínica São José");
+        ClinicDTO created = clinicService.save(clinicDTO);
+        try {
+            restClinicMockMvc.perform(get("/api/_search/clinics").param("q", "SAO JO"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$.[*].id").value(hasItem(created.getId().intValue())))
+                .andExpect(jsonPath("$.[*].name").value(hasItem("Clínica São José")));
+        } finally {
+            clinicService.delete(created.getId());
+        }
+        restClinicMockMvc.perform(get("/api/_search/clinics").param("q", "sao jo"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(created.getId().intValue()))));
+    }
+
     @Test
     @Transactional
     public void getNonExistingClinic() throws Exception {
@@ -218,4 +491,43 @@ public class ClinicResourceIT {
         List<Clinic> clinicList = clinicRepository.findAll();
         assertThat(clinicList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    @Transactional
+    public void deleteClinicsById() throws Exception {
+        // Initialize the database with enough clinics for three delete chunks of 256 ids
+        List<Clinic> clinics = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            clinics.add(new Clinic().name(DEFAULT_NAME + i));
+        }
+        clinicRepository.saveAll(clinics);
+        Clinic kept = clinicRepository.saveAndFlush(new Clinic().name(UPDATED_NAME));
+        String ids = clinics.stream().map(c -> c.getId().toString()).collect(Collectors.joining(","));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Delete the clinics
+        restClinicMockMvc.perform(delete("/api/clinics").param("ids", ids)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNoContent());
+
+        // One delete statement per chunk, whatever the number of rows
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityDeleteCount()).isZero();
+
+        // Validate only the other clinic is left
+        assertThat(clinicRepository.findAllById(clinics.stream().map(Clinic::getId).collect(Collectors.toList()))).isEmpty();
+        assertThat(clinicRepository.findById(kept.getId())).isPresent();
+    }
+
+    @Test
+    @Transactional
+    public void deleteClinicsWithTooManyIds() throws Exception {
+        String ids = LongStream.rangeClosed(1, 1001).mapToObj(Long::toString).collect(Collectors.joining(","));
+
+        restClinicMockMvc.perform(delete("/api/clinics").param("ids", ids)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
 }
@@ -1,26 +1,63 @@
 package org.clinic.web.rest;
 
 import org.clinic.ClinicApp;
+import org.clinic.domain.RefreshToken;
 import org.clinic.domain.User;
+import org.clinic.repository.RefreshTokenRepository;
+import org.clinic.repository.RevokedTokenRepository;
+import org.clinic.repository.UserImportCheckpointRepository;
 import org.clinic.repository.UserRepository;
+import org.clinic.security.AuthenticatedUser;
+import org.clinic.security.AuthoritiesConstants;
+import org.clinic.security.jwt.JWTFilter;
+import org.clinic.security.jwt.JwtAuthentication;
+import org.clinic.security.jwt.TokenProvider;
+import org.clinic.service.RefreshTokenService;
+import org.clinic.service.UserImportService;
+import org.clinic.service.UsernameAlreadyUsedException;
 import org.clinic.service.UserService;
+import org.clinic.service.dto.LoginRequest;
+import org.clinic.service.dto.RefreshTokenRequest;
+import org.clinic.service.dto.UserImportResultDTO;
 import org.clinic.service.dto.UserDTO;
 import org.clinic.service.mapper.UserMapper;
+import org.clinic.web.rest.errors.ErrorConstants;
 
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -56,6 +93,33 @@ public class UserResourceIT {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private UserImportCheckpointRepository userImportCheckpointRepository;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Autowired
     private MockMvc restUserMockMvc;
 
@@ -137,6 +201,196 @@ public class UserResourceIT {
     }
 
 
+    @Test
+    @Transactional
+    public void createUserWithExistingUsernameIsConflict() throws Exception {
+        UserDTO existing = new UserDTO();
+        existing.setUsername("existing-user");
+        existing.setPassword(DEFAULT_PASSWORD);
+        userService.save(existing);
+
+        // Usernames are compared once trimmed and lower-cased
+        UserDTO userDTO = userMapper.toDto(user);
+        userDTO.setUsername(" Existing-User ");
+        restUserMockMvc.perform(post("/api/users")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(userDTO)))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("error.usernameAlreadyUsed"));
+    }
+
+    @Test
+    public void concurrentSignupsOfTheSameUsernameCreateOneUser() throws Exception {
+        // Each signup runs in its own transaction, so this test must not run in a rolled-back transaction
+        int signups = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(signups);
+        List<User> created = new ArrayList<>();
+        int duplicates = 0;
+        try {
+            List<Future<User>> results = new ArrayList<>();
+            for (int i = 0; i < signups; i++) {
+                results.add(executor.submit(() -> {
+                    UserDTO userDTO = new UserDTO();
+                    userDTO.setUsername("concurrent-user");
+                    userDTO.setPassword(DEFAULT_PASSWORD);
+                    start.await();
+                    return userService.save(userDTO);
+                }));
+            }
+            start.countDown();
+            for (Future<User> result : results) {
+                try {
+                    created.add(result.get(30, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(UsernameAlreadyUsedException.class);
+                    duplicates++;
+                }
+            }
+
+            assertThat(created).hasSize(1);
+            assertThat(duplicates).isEqualTo(signups - 1);
+        } finally {
+            executor.shutdownNow();
+            for (User createdUser : created) {
+                userService.delete(createdUser.getId());
+            }
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void importUsersReportsRowErrors() throws Exception {
+        // Each chunk is saved in its own transaction, so this test must not run in a rolled-back transaction
+        String csv = "id;username;password;firstname;lastname\n" +
+            "1;import-e;pass-e;Eve;E\n" +
+            "2;IMPORT-E;pass-x;Dup;E\n" +
+            "3;import-f;;Fay;F\n" +
+            "4;only;four;fields\n" +
+            "5; Import-G ;pass-g;;\n";
+        try {
+            restUserMockMvc.perform(post("/api/users/import")
+                .param("importId", "import-errors")
+                .contentType("text/csv")
+                .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.read").value(5))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failed").value(3))
+                .andExpect(jsonPath("$.errors[*].index").value(contains(2, 3, 4)))
+                .andExpect(jsonPath("$.errors[0].error").value("Username already used"))
+                .andExpect(jsonPath("$.errors[1].error").value("Missing password"))
+                .andExpect(jsonPath("$.error").isEmpty());
+
+            User imported = userRepository.findByUsername("import-g").get();
+            assertThat(imported.getFirstname()).isNull();
+            assertThat(passwordEncoder.matches("pass-g", imported.getPassword())).isTrue();
+        } finally {
+            userImportCheckpointRepository.deleteById("import-errors");
+            userRepository.findByUsername("import-e").ifPresent(created -> userService.delete(created.getId()));
+            userRepository.findByUsername("import-g").ifPresent(created -> userService.delete(created.getId()));
+        }
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void importUsersResumesAfterTheLastCommittedChunk() throws Exception {
+        // Each chunk is saved in its own transaction, so this test must not run in a rolled-back transaction
+        StringBuilder tooLong = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            tooLong.append('x');
+        }
+        String csv = "id;username;password;firstname;lastname\n" +
+            "1;resume-a;pass-a;Ann;A\n" +
+            "2;resume-b;pass-b;Bob;B\n" +
+            "3;%s;pass-c;Cid;C\n" +
+            "4;resume-d;pass-d;Dan;D\n";
+        try {
+            // The second chunk fails, so the import stops after the first one
+            restUserMockMvc.perform(post("/api/users/import")
+                .param("importId", "import-resume")
+                .contentType("text/csv")
+                .content(String.format(csv, tooLong)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.error").value("Rows 3 to 4 rolled back"));
+            assertThat(userRepository.findByUsername("resume-d")).isEmpty();
+            assertThat(userImportCheckpointRepository.findById("import-resume").get().getRowsCommitted()).isEqualTo(2);
+
+            // Once the input is fixed, the same import resumes at the failed chunk
+            restUserMockMvc.perform(post("/api/users/import")
+                .param("importId", "import-resume")
+                .contentType("text/csv")
+                .content(String.format(csv, "resume-c")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.skipped").value(2))
+                .andExpect(jsonPath("$.read").value(2))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failed").value(0));
+            assertThat(userRepository.findByUsername("resume-c")).isPresent();
+            assertThat(userRepository.findByUsername("resume-d")).isPresent();
+        } finally {
+            userImportCheckpointRepository.deleteById("import-resume");
+            for (String username : new String[]{"resume-a", "resume-b", "resume-c", "resume-d"}) {
+                userRepository.findByUsername(username).ifPresent(created -> userService.delete(created.getId()));
+            }
+        }
+    }
+
+    @Test
+    public void importUsersRequiresAdmin() throws Exception {
+        restUserMockMvc.perform(post("/api/users/import")
+            .param("importId", "import-forbidden")
+            .contentType("text/csv")
+            .content("username;password\nforbidden;pass\n"))
+            .andExpect(status().isForbidden());
+
+        assertThat(userRepository.findByUsername("forbidden")).isEmpty();
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void importUsersRejectsConcurrentImports() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Reader blockingInput = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                started.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserImportResultDTO> running = executor.submit(() -> userImportService.importUsers("import-running", blockingInput));
+            assertThat(started.await(30, TimeUnit.SECONDS)).isTrue();
+
+            restUserMockMvc.perform(post("/api/users/import")
+                .param("importId", "import-concurrent")
+                .contentType("text/csv")
+                .content("username;password\nconcurrent;pass\n"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_USER_IMPORT_IN_PROGRESS));
+
+            release.countDown();
+            assertThat(running.get(30, TimeUnit.SECONDS).getCreated()).isZero();
+            assertThat(userRepository.findByUsername("concurrent")).isEmpty();
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     @Transactional
     public void getAllUsers() throws Exception {
@@ -149,9 +403,68 @@ public class UserResourceIT {
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(jsonPath("$.[*].id").value(hasItem(user.getId().intValue())))
             .andExpect(jsonPath("$.[*].username").value(hasItem(DEFAULT_USERNAME)))
-            .andExpect(jsonPath("$.[*].password").value(hasItem(DEFAULT_PASSWORD)))
+            .andExpect(jsonPath("$.[*].password").doesNotExist())
             .andExpect(jsonPath("$.[*].firstname").value(hasItem(DEFAULT_FIRSTNAME)))
-            .andExpect(jsonPath("$.[*].lastname").value(hasItem(DEFAULT_LASTNAME)));
+            .andExpect(jsonPath("$.[*].lastname").value(hasItem(DEFAULT_LASTNAME)))
+            .andExpect(header().exists("X-Total-Count"));
+    }
+
+    @Test
+    @Transactional
+    public void getAllUsersFilteredByPrefixes() throws Exception {
+        userRepository.saveAndFlush(new User().username("list-ada").password(DEFAULT_PASSWORD).firstname("Ada").lastname("Lovelace"));
+        userRepository.saveAndFlush(new User().username("list-alan").password(DEFAULT_PASSWORD).firstname("Alan").lastname("Turing"));
+        userRepository.saveAndFlush(new User().username("list-grace").password(DEFAULT_PASSWORD).firstname("Grace").lastname("Hopper"));
+        userRepository.saveAndFlush(new User().username("list_other").password(DEFAULT_PASSWORD).firstname("Ada").lastname("Byron"));
+        em.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // The username prefix is normalized, and its wildcards are matched literally
+        restUserMockMvc.perform(get("/api/users?username=LIST-&sort=username"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].username").value(contains("list-ada", "list-alan", "list-grace")))
+            .andExpect(header().string("X-Total-Count", "3"));
+        restUserMockMvc.perform(get("/api/users?username=list-&firstname=A&sort=lastname,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].username").value(contains("list-alan", "list-ada")));
+        restUserMockMvc.perform(get("/api/users?username=list&lastname=Hop"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].username").value(contains("list-grace")));
+        restUserMockMvc.perform(get("/api/users?username=list_"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].username").value(contains("list_other")));
+
+        // Users are read as projections, never as entities with their passwords
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @Transactional
+    public void getAllUsersByPage() throws Exception {
+        for (String username : new String[] {"page-a", "page-b", "page-c"}) {
+            userRepository.saveAndFlush(new User().username(username).password(DEFAULT_PASSWORD));
+        }
+
+        restUserMockMvc.perform(get("/api/users?username=page-&sort=username&page=1&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].username").value(contains("page-c")))
+            .andExpect(header().string("X-Total-Count", "3"))
+            .andExpect(header().string("Link", startsWith("<")));
+    }
+
+    @Test
+    @Transactional
+    public void getAllUsersWithAnInvalidSortIsBadRequest() throws Exception {
+        restUserMockMvc.perform(get("/api/users?sort=password"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllUsersBeyondTheLargestOffsetIsBadRequest() throws Exception {
+        restUserMockMvc.perform(get("/api/users?page=" + Integer.MAX_VALUE + "&size=2"))
+            .andExpect(status().isBadRequest());
     }
     
     @Test
@@ -248,4 +561,201 @@ public class UserResourceIT {
         List<User> userList = userRepository.findAll();
         assertThat(userList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    @Test
+    public void authenticateLoadsTheUserOnce() throws Exception {
+        // Login runs its own transactions, so this test must not run in a rolled-back transaction
+        UserDTO userDTO = new UserDTO();
+        userDTO.setUsername("login-user");
+        userDTO.setPassword("login-password");
+        User savedUser = userService.save(userDTO);
+        try {
+            LoginRequest loginRequest = new LoginRequest();
+            loginRequest.setUsername("login-user");
+            loginRequest.setPassword("login-password");
+            SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+            sessionFactory.getCache().evictAllRegions();
+            Statistics statistics = sessionFactory.getStatistics();
+            statistics.clear();
+
+            MvcResult result = restUserMockMvc.perform(post("/api/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+            // One natural id lookup: the account id in the token comes from the loaded user
+            assertThat(statistics.getNaturalIdQueryExecutionCount()).isEqualTo(1);
+            assertThat(statistics.getEntityLoadCount()).isEqualTo(1);
+            String token = JsonPath.read(result.getResponse().getContentAsString(), "$.token");
+            AuthenticatedUser principal = (AuthenticatedUser) tokenProvider.authenticate(token).get().getPrincipal();
+            assertThat(principal.getName()).isEqualTo("login-user");
+            assertThat(principal.getAccountId()).isEqualTo(savedUser.getId());
+
+            // Once the user is cached, a login does not read it again: it only writes the refresh token
+            statistics.clear();
+            restUserMockMvc.perform(post("/api/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(loginRequest)))
+                .andExpect(status().isOk());
+            assertThat(statistics.getNaturalIdQueryExecutionCount()).isZero();
+            assertThat(statistics.getEntityLoadCount()).isZero();
+            assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        } finally {
+            userService.delete(savedUser.getId());
+        }
+    }
+
+    @Test
+    public void authenticateUpgradesOlderPasswordHashes() throws Exception {
+        // Login runs its own transactions, so this test must not run in a rolled-back transaction
+        User legacyUser = userRepository.saveAndFlush(new User()
+            .username("legacy-user")
+            .password(new BCryptPasswordEncoder(4).encode("legacy-password")));
+        try {
+            LoginRequest loginRequest = new LoginRequest();
+            loginRequest.setUsername("legacy-user");
+            loginRequest.setPassword("legacy-password");
+
+            restUserMockMvc.perform(post("/api/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(loginRequest)))
+                .andExpect(status().isOk());
+
+            // The hash is upgraded in the background
+            long deadline = System.currentTimeMillis() + 10_000;
+            String password = userRepository.findById(legacyUser.getId()).get().getPassword();
+            while (!password.startsWith("{bcrypt") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                password = userRepository.findById(legacyUser.getId()).get().getPassword();
+            }
+            assertThat(password).startsWith("{bcrypt4}");
+            assertThat(passwordEncoder.matches("legacy-password", password)).isTrue();
+        } finally {
+            userService.delete(legacyUser.getId());
+        }
+    }
+
+    @Test
+    public void refreshIssuesNewTokensWithoutCheckingThePassword() throws Exception {
+        // Refreshes run their own transactions, so this test must not run in a rolled-back transaction
+        UserDTO userDTO = new UserDTO();
+        userDTO.setUsername("refresh-user");
+        userDTO.setPassword("refresh-password");
+        User savedUser = userService.save(userDTO);
+        try {
+            LoginRequest loginRequest = new LoginRequest();
+            loginRequest.setUsername("refresh-user");
+            loginRequest.setPassword("refresh-password");
+            MvcResult login = restUserMockMvc.perform(post("/api/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+            String refreshToken = JsonPath.read(login.getResponse().getContentAsString(), "$.refreshToken");
+            long passwordChecks = passwordChecks();
+
+            MvcResult refresh = restUserMockMvc.perform(post("/api/authenticate/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(refreshTokenRequest(refreshToken))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+            assertThat(passwordChecks()).isEqualTo(passwordChecks);
+            String token = JsonPath.read(refresh.getResponse().getContentAsString(), "$.token");
+            AuthenticatedUser principal = (AuthenticatedUser) tokenProvider.authenticate(token).get().getPrincipal();
+            assertThat(principal.getName()).isEqualTo("refresh-user");
+            assertThat(principal.getAccountId()).isEqualTo(savedUser.getId());
+            String nextRefreshToken = JsonPath.read(refresh.getResponse().getContentAsString(), "$.refreshToken");
+            assertThat(nextRefreshToken).isNotEqualTo(refreshToken);
+
+            // A used refresh token presented again revokes its whole family
+            restUserMockMvc.perform(post("/api/authenticate/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(refreshTokenRequest(refreshToken))))
+                .andExpect(status().isUnauthorized());
+            restUserMockMvc.perform(post("/api/authenticate/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(refreshTokenRequest(nextRefreshToken))))
+                .andExpect(status().isUnauthorized());
+        } finally {
+            userService.delete(savedUser.getId());
+        }
+    }
+
+    @Test
+    public void logoutRevokesTheAccessAndRefreshTokens() throws Exception {
+        // Revocations are applied after commit, so this test must not run in a rolled-back transaction
+        UserDTO userDTO = new UserDTO();
+        userDTO.setUsername("logout-user");
+        userDTO.setPassword("logout-password");
+        User savedUser = userService.save(userDTO);
+        String tokenId = null;
+        try {
+            LoginRequest loginRequest = new LoginRequest();
+            loginRequest.setUsername("logout-user");
+            loginRequest.setPassword("logout-password");
+            MvcResult login = restUserMockMvc.perform(post("/api/authenticate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn();
+            String token = JsonPath.read(login.getResponse().getContentAsString(), "$.token");
+            String refreshToken = JsonPath.read(login.getResponse().getContentAsString(), "$.refreshToken");
+            tokenId = ((JwtAuthentication) tokenProvider.authenticate(token).get()).getTokenId();
+
+            restUserMockMvc.perform(post("/api/logout")
+                .header(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(refreshTokenRequest(refreshToken))))
+                .andExpect(status().isNoContent());
+
+            assertThat(revokedTokenRepository.existsById(tokenId)).isTrue();
+            assertThat(tokenProvider.authenticate(token)).isEmpty();
+            restUserMockMvc.perform(post("/api/authenticate/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(refreshTokenRequest(refreshToken))))
+                .andExpect(status().isUnauthorized());
+        } finally {
+            if (tokenId != null) {
+                revokedTokenRepository.deleteById(tokenId);
+            }
+            userService.delete(savedUser.getId());
+        }
+    }
+
+    @Test
+    public void refreshWithAnUnknownTokenIsUnauthorized() throws Exception {
+        restUserMockMvc.perform(post("/api/authenticate/refresh")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(refreshTokenRequest("unknown"))))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @Transactional
+    public void purgeDeletesExpiredRefreshTokens() {
+        User user = userRepository.saveAndFlush(new User().username("purge-user").password(DEFAULT_PASSWORD));
+        String expiredHash = String.format("%064d", 1);
+        String validHash = String.format("%064d", 2);
+        refreshTokenRepository.save(new RefreshToken().tokenHash(expiredHash).user(user).familyId("family")
+            .expiresAt(Instant.now().minusSeconds(60)));
+        refreshTokenRepository.saveAndFlush(new RefreshToken().tokenHash(validHash).user(user).familyId("family")
+            .expiresAt(Instant.now().plusSeconds(60)));
+
+        refreshTokenService.purgeExpiredTokens();
+
+        assertThat(refreshTokenRepository.findByTokenHash(expiredHash)).isEmpty();
+        assertThat(refreshTokenRepository.findByTokenHash(validHash)).isPresent();
+    }
+
+    private long passwordChecks() {
+        return meterRegistry.get("password.hashing.time").tag("operation", "matches").timer().count();
+    }
+
+    private static RefreshTokenRequest refreshTokenRequest(String refreshToken) {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken(refreshToken);
+        return refreshTokenRequest;
+    }
 }
@@ -1,5 +1,7 @@
 package org.clinic.web.rest.errors;
 
+import org.clinic.security.PasswordHashingRejectedException;
+import org.clinic.security.ratelimit.RateLimitExceededException;
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
@@ -18,6 +20,16 @@ public class ExceptionTranslatorTestController {
         throw new ConcurrencyFailureException("test concurrency failure");
     }
 
+    @GetMapping("/password-hashing-rejected")
+    public void passwordHashingRejected() {
+        throw new PasswordHashingRejectedException("test password hashing rejected", 3);
+    }
+
+    @GetMapping("/rate-limit-exceeded")
+    public void rateLimitExceeded() {
+        throw new RateLimitExceededException("test rate limit exceeded", 5);
+    }
+
     @PostMapping("/method-argument")
     public void methodArgument(@Valid @RequestBody TestDTO testDTO) {
     }